@@ -0,0 +1,25 @@
+package com.estoque.benchmark;
+
+import java.io.OutputStream;
+
+/**
+ * Destino de escrita que só conta os bytes, para medir a serialização sem I/O.
+ */
+public final class ContadorBytes extends OutputStream {
+
+    private long total;
+
+    @Override
+    public void write(int b) {
+        total++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        total += len;
+    }
+
+    public long total() {
+        return total;
+    }
+}
@@ -0,0 +1,126 @@
+package com.estoque.benchmark;
+
+import com.estoque.model.Categoria;
+import com.estoque.model.Movimentacao;
+import com.estoque.model.Produto;
+import com.estoque.model.TipoMovimentacao;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Catálogo gerado de forma determinística (semente fixa) para os benchmarks.
+ *
+ * Proporções próximas das do banco de produção: nomes com acentos, cerca de 10%
+ * dos produtos abaixo do mínimo e 5% sem categoria.
+ */
+public final class DadosSinteticos {
+
+    public static final int CATEGORIAS = 20;
+
+    private static final String[] NOMES = {
+            "Café torrado", "Açúcar cristal", "Feijão carioca", "Arroz parboilizado", "Óleo de soja",
+            "Sabão em pó", "Parafuso sextavado", "Caixa organizadora", "Fita isolante", "Lâmpada LED",
+            "Detergente neutro", "Macarrão espaguete", "Pilha alcalina", "Cabo de força", "Água mineral"
+    };
+    private static final String[] UNIDADES = {"UN", "CX", "KG", "PCT", "L"};
+
+    private DadosSinteticos() {}
+
+    public static List<Categoria> categorias() {
+        List<Categoria> categorias = new ArrayList<>(CATEGORIAS);
+        for (long id = 1; id <= CATEGORIAS; id++) {
+            categorias.add(new Categoria(id, "Categoria " + id, "Descrição da categoria " + id, "M", "Caixa"));
+        }
+        return categorias;
+    }
+
+    public static List<Produto> produtos(int quantidade) {
+        return produtos(quantidade, categorias());
+    }
+
+    public static List<Produto> produtos(int quantidade, List<Categoria> categorias) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Produto> produtos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            long id = i + 1;
+            int minima = 5 + random.nextInt(20);
+            int estoque = random.nextInt(10) == 0 ? random.nextInt(minima) : minima + random.nextInt(500);
+            Categoria categoria = random.nextInt(20) == 0 ? null : categorias.get(random.nextInt(categorias.size()));
+            produtos.add(new Produto(
+                    id,
+                    NOMES[random.nextInt(NOMES.length)] + " " + id,
+                    BigDecimal.valueOf(50 + random.nextInt(500_000), 2),
+                    UNIDADES[random.nextInt(UNIDADES.length)],
+                    estoque,
+                    minima,
+                    minima * 20,
+                    categoria));
+        }
+        return produtos;
+    }
+
+    public static List<Movimentacao> movimentacoes(int quantidade, List<Produto> produtos) {
+        SplittableRandom random = new SplittableRandom(7);
+        LocalDate inicio = LocalDate.of(2024, 1, 1);
+        List<Movimentacao> movimentacoes = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            movimentacoes.add(new Movimentacao(
+                    (long) i + 1,
+                    produtos.get(random.nextInt(produtos.size())),
+                    inicio.plusDays(random.nextInt(730)),
+                    1 + random.nextInt(50),
+                    random.nextBoolean() ? TipoMovimentacao.ENTRADA : TipoMovimentacao.SAIDA));
+        }
+        return movimentacoes;
+    }
+
+    /**
+     * Corpo de POST /api/movimentacoes/lote com a quantidade de itens pedida.
+     */
+    public static byte[] loteMovimentacoesJson(int quantidade) {
+        SplittableRandom random = new SplittableRandom(11);
+        StringBuilder sb = new StringBuilder(quantidade * 80);
+        sb.append('[');
+        for (int i = 0; i < quantidade; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"produtoId\": ").append(1 + random.nextInt(quantidade))
+                    .append(", \"tipo\": \"").append(random.nextBoolean() ? "ENTRADA" : "SAIDA")
+                    .append("\", \"quantidade\": ").append(1 + random.nextInt(50))
+                    .append(", \"data\": \"2025-0").append(1 + random.nextInt(9))
+                    .append("-1").append(random.nextInt(10)).append("\"}");
+        }
+        sb.append(']');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Array de corpos de POST /api/produtos, como o cliente os envia.
+     */
+    public static byte[] produtosJson(List<Produto> produtos) {
+        StringBuilder sb = new StringBuilder(produtos.size() * 160);
+        sb.append('[');
+        for (int i = 0; i < produtos.size(); i++) {
+            Produto p = produtos.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"nome\": \"").append(p.getNome())
+                    .append("\", \"precoUnitario\": ").append(p.getPrecoUnitario().toPlainString())
+                    .append(", \"unidade\": \"").append(p.getUnidade())
+                    .append("\", \"quantidadeEstoque\": ").append(p.getQuantidadeEstoque())
+                    .append(", \"quantidadeMinima\": ").append(p.getQuantidadeMinima())
+                    .append(", \"quantidadeMaxima\": ").append(p.getQuantidadeMaxima())
+                    .append(", \"categoriaId\": ").append(p.getCategoria() != null ? p.getCategoria().getId() : null)
+                    .append('}');
+        }
+        sb.append(']');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package com.estoque.repository;
+
+import com.estoque.benchmark.DadosSinteticos;
+import com.estoque.model.Categoria;
+import com.estoque.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapeamento linha -> Produto de ProdutoRepository.mapResultSet, sem banco.
+ *
+ * As linhas vêm de um ResultSet em memória (proxy, como o do ConnectionPool),
+ * então o tempo absoluto inclui o despacho do proxy; compare execuções entre si.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ProdutoRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int tamanho;
+
+    private ProdutoRepository repository;
+    private Map<Long, Categoria> dicionario;
+    private Colunas colunas;
+
+    // Valores por coluna, como chegariam do driver
+    private record Colunas(long[] id, String[] nome, BigDecimal[] preco, String[] unidade,
+                           int[] estoque, int[] minima, int[] maxima, Long[] categoriaId) {}
+
+    @Setup
+    public void preparar() {
+        // Todas as categorias estão no dicionário: o cache nunca vai ao banco
+        repository = new ProdutoRepository(new CategoriaCache(null));
+        dicionario = new HashMap<>();
+        for (Categoria c : DadosSinteticos.categorias()) {
+            dicionario.put(c.getId(), c);
+        }
+
+        List<Produto> produtos = DadosSinteticos.produtos(tamanho);
+        colunas = new Colunas(new long[tamanho], new String[tamanho], new BigDecimal[tamanho],
+                new String[tamanho], new int[tamanho], new int[tamanho], new int[tamanho], new Long[tamanho]);
+        for (int i = 0; i < tamanho; i++) {
+            Produto p = produtos.get(i);
+            colunas.id()[i] = p.getId();
+            colunas.nome()[i] = p.getNome();
+            colunas.preco()[i] = p.getPrecoUnitario();
+            colunas.unidade()[i] = p.getUnidade();
+            colunas.estoque()[i] = p.getQuantidadeEstoque();
+            colunas.minima()[i] = p.getQuantidadeMinima();
+            colunas.maxima()[i] = p.getQuantidadeMaxima();
+            colunas.categoriaId()[i] = p.getCategoria() != null ? p.getCategoria().getId() : null;
+        }
+    }
+
+    @Benchmark
+    public List<Produto> mapResultSet() throws SQLException {
+        ResultSet rs = resultSet(colunas);
+        List<Produto> produtos = new ArrayList<>();
+        while (rs.next()) {
+            produtos.add(repository.mapResultSet(rs, dicionario));
+        }
+        return produtos;
+    }
+
+    private static ResultSet resultSet(Colunas c) {
+        int[] linha = {-1};
+        boolean[] nulo = {false};
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    int i = linha[0];
+                    switch (method.getName()) {
+                        case "next":
+                            return ++linha[0] < c.id().length;
+                        case "wasNull":
+                            return nulo[0];
+                        case "getLong":
+                            if ("id".equals(args[0])) {
+                                return c.id()[i];
+                            }
+                            Long categoriaId = c.categoriaId()[i];
+                            nulo[0] = categoriaId == null;
+                            return categoriaId != null ? categoriaId : 0L;
+                        case "getInt":
+                            return switch ((String) args[0]) {
+                                case "quantidade_estoque" -> c.estoque()[i];
+                                case "quantidade_minima" -> c.minima()[i];
+                                default -> c.maxima()[i];
+                            };
+                        case "getString":
+                            return "nome".equals(args[0]) ? c.nome()[i] : c.unidade()[i];
+                        case "getBigDecimal":
+                            return c.preco()[i];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,65 @@
+package com.estoque.server;
+
+import com.estoque.benchmark.DadosSinteticos;
+import com.estoque.model.ComandoMovimentacao;
+import com.estoque.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leitura dos corpos de requisição com os mesmos leitores dos handlers. O custo
+ * de um POST isolado é o custo por elemento destes arrays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class JsonReaderBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int tamanho;
+
+    private byte[] lote;
+    private byte[] produtos;
+
+    @Setup
+    public void preparar() {
+        lote = DadosSinteticos.loteMovimentacoesJson(tamanho);
+        produtos = DadosSinteticos.produtosJson(DadosSinteticos.produtos(tamanho));
+    }
+
+    // Corpo de POST /api/movimentacoes/lote
+    @Benchmark
+    public List<ComandoMovimentacao> loteMovimentacoes() throws IOException {
+        return ler(lote, r -> r.nextList(HttpApiServer.MovimentacoesHandler::lerComando));
+    }
+
+    @Benchmark
+    public List<Produto> produtos() throws IOException {
+        return ler(produtos, r -> r.nextList(HttpApiServer.ProdutosHandler::lerProduto));
+    }
+
+    // Mesmo fluxo de HttpApiServer.lerJson, sem o HttpExchange
+    private static <T> T ler(byte[] corpo, JsonReader.ElementReader<T> leitor) throws IOException {
+        JsonReader r = new JsonReader(new ByteArrayInputStream(corpo));
+        T valor = leitor.read(r);
+        r.endDocument();
+        return valor;
+    }
+}
@@ -0,0 +1,70 @@
+package com.estoque.server;
+
+import com.estoque.benchmark.ContadorBytes;
+import com.estoque.benchmark.DadosSinteticos;
+import com.estoque.model.Movimentacao;
+import com.estoque.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialização das listagens com os mesmos escritores usados pelos handlers
+ * (GET /api/produtos, GET /api/movimentacoes). Inclui o escape dos nomes com acento.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class JsonWriterBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int tamanho;
+
+    private List<Produto> produtos;
+    private List<Movimentacao> movimentacoes;
+
+    @Setup
+    public void preparar() {
+        produtos = DadosSinteticos.produtos(tamanho);
+        movimentacoes = DadosSinteticos.movimentacoes(tamanho, produtos);
+    }
+
+    @Benchmark
+    public long produtos() throws IOException {
+        ContadorBytes out = new ContadorBytes();
+        try (JsonWriter w = new JsonWriter(out)) {
+            w.array(produtos, HttpApiServer.ProdutosHandler::escrever);
+        }
+        return out.total();
+    }
+
+    @Benchmark
+    public long movimentacoes() throws IOException {
+        ContadorBytes out = new ContadorBytes();
+        try (JsonWriter w = new JsonWriter(out)) {
+            w.array(movimentacoes, HttpApiServer.MovimentacoesHandler::escrever);
+        }
+        return out.total();
+    }
+
+    // Caminho das respostas versionadas: corpo inteiro em memória para reaproveitar
+    @Benchmark
+    public byte[] produtosEmMemoria() throws IOException {
+        return HttpApiServer.codificarJson(w -> w.array(produtos, HttpApiServer.ProdutosHandler::escrever));
+    }
+}
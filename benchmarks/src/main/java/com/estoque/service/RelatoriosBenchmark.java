@@ -0,0 +1,129 @@
+package com.estoque.service;
+
+import com.estoque.benchmark.DadosSinteticos;
+import com.estoque.model.Categoria;
+import com.estoque.model.Produto;
+import com.estoque.repository.CategoriaCache;
+import com.estoque.repository.CategoriaRepository;
+import com.estoque.repository.ProdutoRepository;
+import com.estoque.repository.TotalCategoria;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Relatórios de estoque: as agregações com streams sobre a lista completa
+ * (como o RelatorioService fazia antes de usar SQL) contra os AgregadosEstoque
+ * mantidos em memória.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RelatoriosBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int tamanho;
+
+    private List<Produto> produtos;
+    private AgregadosEstoque agregados;
+    private int proximo;
+
+    @Setup
+    public void preparar() {
+        List<Categoria> categorias = DadosSinteticos.categorias();
+        produtos = DadosSinteticos.produtos(tamanho, categorias);
+
+        CategoriaCache cache = new CategoriaCache(new CategoriaRepository() {
+            @Override
+            public List<Categoria> buscarTodos() {
+                return categorias;
+            }
+        });
+        ProdutoRepository repository = new ProdutoRepository(cache) {
+            @Override
+            public List<Produto> buscarTodos() {
+                return produtos;
+            }
+        };
+        agregados = new AgregadosEstoque(repository, cache);
+        agregados.recarregar();
+    }
+
+    // ==================== STREAMS SOBRE A LISTA COMPLETA ====================
+
+    @Benchmark
+    public BigDecimal streamsValorTotal() {
+        return produtos.stream()
+                .map(p -> p.getPrecoUnitario().multiply(BigDecimal.valueOf(p.getQuantidadeEstoque())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public List<Produto> streamsAbaixoDoMinimo() {
+        return produtos.stream()
+                .filter(p -> p.getQuantidadeEstoque() < p.getQuantidadeMinima())
+                .sorted(Comparator.comparing(Produto::getNome))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Map<String, Long> streamsProdutosPorCategoria() {
+        return produtos.stream()
+                .collect(Collectors.groupingBy(
+                        p -> p.getCategoria() != null && p.getCategoria().getNome() != null
+                                ? p.getCategoria().getNome()
+                                : "Sem categoria",
+                        Collectors.counting()));
+    }
+
+    // ==================== AGREGADOS EM MEMÓRIA ====================
+
+    @Benchmark
+    public BigDecimal agregadosValorTotal() {
+        return agregados.getValorTotal();
+    }
+
+    @Benchmark
+    public List<Produto> agregadosAbaixoDoMinimo() {
+        return agregados.getAbaixoDoMinimo();
+    }
+
+    @Benchmark
+    public List<TotalCategoria> agregadosProdutosPorCategoria() {
+        return agregados.getTotaisPorCategoria();
+    }
+
+    // Custo de manter os agregados: uma movimentação (entrada e estorno)
+    @Benchmark
+    public void agregadosMovimentacao() {
+        Long id = produtos.get(proximo).getId();
+        proximo = (proximo + 1) % produtos.size();
+        agregados.estoqueAlterado(id, 1);
+        agregados.estoqueAlterado(id, -1);
+    }
+
+    // Carga inicial e reconciliação periódica
+    @Benchmark
+    public void agregadosRecarga(Blackhole bh) {
+        bh.consume(agregados.recarregar());
+    }
+}
@@ -1,5 +1,11 @@
--- Tipo ENUM para movimentações
-CREATE TYPE IF NOT EXISTS tipo_movimentacao AS ENUM ('ENTRADA', 'SAIDA');
+-- Tipo ENUM para movimentações (Postgres não aceita CREATE TYPE IF NOT EXISTS)
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_type WHERE typname = 'tipo_movimentacao') THEN
+        CREATE TYPE tipo_movimentacao AS ENUM ('ENTRADA', 'SAIDA');
+    END IF;
+END
+$$;
 
 -- Tabela de categorias
 CREATE TABLE IF NOT EXISTS categorias (
@@ -31,6 +37,9 @@ CREATE TABLE IF NOT EXISTS movimentacoes (
     tipo_movimentacao      tipo_movimentacao NOT NULL
 );
 
+-- Índices e alterações posteriores ficam nas migrações em
+-- src/main/resources/db/migration, aplicadas pela aplicação ao iniciar
+
 -- Dados iniciais de categorias
 INSERT INTO categorias (nome, descricao, tamanho, embalagem) VALUES 
     ('Eletrônicos', 'Produtos eletrônicos em geral', 'Médio',  'Plástico'),
@@ -1,30 +1,118 @@
 package com.estoque;
 
+import com.estoque.config.DatabaseConnection;
+import com.estoque.config.Env;
+import com.estoque.config.Metricas;
+import com.estoque.config.SchemaMigrator;
+import com.estoque.repository.CategoriaCache;
 import com.estoque.repository.CategoriaRepository;
+import com.estoque.repository.IdempotenciaRepository;
 import com.estoque.repository.MovimentacaoRepository;
+import com.estoque.repository.ParticoesMovimentacaoRepository;
+import com.estoque.repository.ProdutoCache;
 import com.estoque.repository.ProdutoRepository;
+import com.estoque.service.AgregadosEstoque;
+import com.estoque.service.CatalogoProdutos;
 import com.estoque.service.CategoriaService;
+import com.estoque.service.ChavesIdempotencia;
+import com.estoque.service.GravacaoAgrupada;
+import com.estoque.service.ManutencaoParticoes;
 import com.estoque.service.MovimentacaoService;
 import com.estoque.service.ProdutoService;
 import com.estoque.service.RelatorioService;
+import com.estoque.service.TravasPorProduto;
 import com.estoque.server.HttpApiServer;
 
+import java.time.Duration;
+
 public class Main {
 
     public static void main(String[] args) throws Exception {
+        // Migrações de esquema pendentes
+        if (Env.getBoolean("DB_MIGRATE", true)) {
+            new SchemaMigrator().migrar();
+        }
+
+        // Partições mensais de movimentacoes: as próximas são criadas antes de receber linhas
+        if (Env.getBoolean("PARTICOES_MANUTENCAO", true)) {
+            ManutencaoParticoes particoes = new ManutencaoParticoes(new ParticoesMovimentacaoRepository(),
+                    Env.getInt("PARTICOES_MESES_FUTUROS", 3),
+                    Env.getInt("PARTICOES_RETENCAO_MESES", 0));
+            particoes.iniciar(Env.getLong("PARTICOES_INTERVALO_H", 24));
+        }
+
         // Repositories
-        ProdutoRepository produtoRepository = new ProdutoRepository();
         CategoriaRepository categoriaRepository = new CategoriaRepository();
+        CategoriaCache categoriaCache = new CategoriaCache(categoriaRepository);
+        ProdutoRepository produtoRepository = new ProdutoRepository(categoriaCache);
         MovimentacaoRepository movimentacaoRepository = new MovimentacaoRepository();
 
+        // Agregados dos relatórios em memória (AGREGADOS_MEMORIA=false volta a calcular no banco)
+        AgregadosEstoque agregados = null;
+        if (Env.getBoolean("AGREGADOS_MEMORIA", true)) {
+            long inicio = System.nanoTime();
+            agregados = new AgregadosEstoque(produtoRepository, categoriaCache);
+            agregados.recarregar();
+            agregados.iniciarReconciliacao(Env.getLong("AGREGADOS_RECONCILIACAO_S", 300));
+            System.out.println("✓ Agregados do estoque carregados em "
+                    + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+        }
+
+        // Catálogo de produtos em memória para GET /api/produtos (CATALOGO_MEMORIA=false lê do banco)
+        CatalogoProdutos catalogo = null;
+        if (Env.getBoolean("CATALOGO_MEMORIA", true)) {
+            catalogo = new CatalogoProdutos(produtoRepository,
+                    Env.getLong("CATALOGO_DEFASAGEM_MAX_MS", 1000),
+                    Env.getLong("CATALOGO_TEMPO_VIDA_MAX_S", 300));
+            CatalogoProdutos.Snapshot inicial = catalogo.recarregar();
+            System.out.println("✓ Catálogo carregado: " + inicial.produtos().size() + " produtos");
+        }
+
+        // Produtos lidos por id mais recentes (PRODUTO_CACHE=0 desliga)
+        ProdutoCache produtoCache = null;
+        int capacidadeProdutos = Env.getInt("PRODUTO_CACHE", 10_000);
+        if (capacidadeProdutos > 0) {
+            produtoCache = new ProdutoCache(produtoRepository, capacidadeProdutos);
+            Metricas.registrarMedidor("estoque_product_cache_size",
+                    "Produtos no cache de busca por id", produtoCache::getTamanho);
+        }
+
         // Services
-        ProdutoService produtoService = new ProdutoService(produtoRepository);
-        CategoriaService categoriaService = new CategoriaService(categoriaRepository);
+        ProdutoService produtoService = new ProdutoService(produtoRepository, agregados, catalogo, produtoCache);
+        CategoriaService categoriaService = new CategoriaService(categoriaRepository, categoriaCache, catalogo, produtoCache);
         MovimentacaoService movimentacaoService = new MovimentacaoService(
-            movimentacaoRepository, produtoRepository
+            movimentacaoRepository, produtoRepository, agregados, catalogo, produtoCache
         );
+        // Movimentações do mesmo produto esperam no processo, sem segurar conexão (MOV_TRAVAS_PRODUTO=0 desliga)
+        int faixasTravas = Env.getInt("MOV_TRAVAS_PRODUTO", 64);
+        if (faixasTravas > 0) {
+            TravasPorProduto travas = new TravasPorProduto(faixasTravas, Env.getLong("MOV_TRAVA_ESPERA_MS", 5000));
+            movimentacaoService.usarTravasPorProduto(travas);
+            Metricas.registrarMedidorRotulado("estoque_product_lock_queue_length",
+                    "Requisições esperando por faixa de trava, com o último produto que a obteve", travas::filas);
+        }
+
+        // Respostas por Idempotency-Key: as recentes em memória, todas no banco até vencer o TTL
+        ChavesIdempotencia chaves = new ChavesIdempotencia(new IdempotenciaRepository(),
+                Env.getInt("IDEMPOTENCIA_CACHE", 10_000),
+                Duration.ofHours(Env.getLong("IDEMPOTENCIA_TTL_H", 24)));
+        chaves.iniciarLimpeza(Env.getLong("IDEMPOTENCIA_LIMPEZA_MIN", 60));
+        movimentacaoService.usarChavesIdempotencia(chaves);
+
+        // Group commit das movimentações avulsas (MOV_GROUP_COMMIT=true): um commit por grupo
+        if (Env.getBoolean("MOV_GROUP_COMMIT", false)) {
+            GravacaoAgrupada agrupada = movimentacaoService.ativarGravacaoAgrupada(
+                    Env.getInt("MOV_GROUP_COMMIT_LOTE", 256),
+                    Env.getLong("MOV_GROUP_COMMIT_ESPERA_MS", 2),
+                    Env.getInt("MOV_GROUP_COMMIT_FILA", 10_000),
+                    Env.getLong("MOV_GROUP_COMMIT_TIMEOUT_MS", 5000));
+            Metricas.registrarMedidor("estoque_group_commit_queue_size",
+                    "Movimentações aguardando o próximo group commit", agrupada::getTamanhoFila);
+            System.out.println("✓ Group commit de movimentações ativo");
+        }
+
         RelatorioService relatorioService = new RelatorioService(
-            produtoRepository, movimentacaoRepository
+            produtoRepository, movimentacaoRepository, agregados
         );
 
         // HTTP Server
@@ -37,5 +125,15 @@ public class Main {
         );
         
         apiServer.start();
+
+        // Aplica a fila do group commit e devolve as conexões físicas ao encerrar o processo.
+        // Com a gravadora ainda presa no banco o pool fica aberto: fechá-lo derrubaria o commit.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (movimentacaoService.pararGravacaoAgrupada(10_000)) {
+                DatabaseConnection.fechar();
+            } else {
+                System.err.println("Group commit ainda gravando ao encerrar; pool de conexões não foi fechado");
+            }
+        }));
     }
 }
@@ -0,0 +1,411 @@
+package com.estoque.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de conexões JDBC limitado.
+ *
+ * As conexões entregues são proxies: o close() devolve a conexão física ao pool
+ * em vez de fechá-la, então os repositories continuam usando try-with-resources.
+ * O reaproveitamento de comandos preparados fica com o cache do próprio driver
+ * (por SQL e por conexão física), configurado pelas propriedades do driver. Como o
+ * driver não expõe acertos desse cache, cada conexão física guarda um LRU só com os
+ * textos SQL, do mesmo tamanho (preparedStatementCacheQueries), para as métricas.
+ */
+public class ConnectionPool {
+
+    // Conexão usada há menos tempo que isso não é revalidada no empréstimo
+    private static final long JANELA_SEM_VALIDACAO_MS = 500;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minimo;
+    private final int maximo;
+    private final long timeoutAquisicaoMs;
+    private final long tempoOciosoMaxMs;
+    private final long tempoVidaMaxMs;
+    private final int timeoutValidacaoSeg;
+    private final Properties propriedadesDriver;
+    // Mesmo padrão do pgjdbc quando a propriedade não é informada
+    private final int comandosNoCacheDriver;
+
+    // LIFO: a conexão devolvida por último é a primeira a ser reutilizada
+    private final ConcurrentLinkedDeque<ConexaoFisica> ociosas = new ConcurrentLinkedDeque<>();
+    private final Semaphore permissoes;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService manutencao;
+    private volatile boolean fechado;
+
+    public ConnectionPool(String url, String user, String password,
+                          int minimo, int maximo,
+                          long timeoutAquisicaoMs,
+                          long tempoOciosoMaxMs,
+                          long tempoVidaMaxMs,
+                          int timeoutValidacaoSeg,
+                          Properties propriedadesDriver) {
+        if (maximo < 1 || minimo < 0 || minimo > maximo) {
+            throw new IllegalArgumentException(
+                    "Configuração de pool inválida: min=" + minimo + ", max=" + maximo);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.timeoutAquisicaoMs = timeoutAquisicaoMs;
+        this.tempoOciosoMaxMs = tempoOciosoMaxMs;
+        this.tempoVidaMaxMs = tempoVidaMaxMs;
+        this.timeoutValidacaoSeg = timeoutValidacaoSeg;
+        this.propriedadesDriver = propriedadesDriver;
+        this.comandosNoCacheDriver = Integer.parseInt(
+                propriedadesDriver.getProperty("preparedStatementCacheQueries", "256"));
+        this.permissoes = new Semaphore(maximo, true);
+
+        this.manutencao = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-conexoes-manutencao");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalo = Math.max(1_000, Math.min(30_000, tempoOciosoMaxMs / 2));
+        manutencao.scheduleWithFixedDelay(this::manter, 0, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Empresta uma conexão, esperando no máximo o timeout de aquisição.
+     */
+    public Connection getConnection() throws SQLException {
+        if (fechado) {
+            throw new SQLException("Pool de conexões encerrado");
+        }
+
+        long inicio = System.nanoTime();
+        boolean obtida = false;
+        try {
+            Connection conn = emprestar();
+            obtida = true;
+            return conn;
+        } finally {
+            if (Metricas.HABILITADAS) {
+                Metricas.aquisicaoConexao(System.nanoTime() - inicio, obtida);
+            }
+        }
+    }
+
+    private Connection emprestar() throws SQLException {
+        try {
+            if (!permissoes.tryAcquire(timeoutAquisicaoMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Tempo esgotado aguardando conexão do pool ("
+                        + timeoutAquisicaoMs + " ms, máximo " + maximo + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido aguardando conexão do pool", e);
+        }
+
+        try {
+            ConexaoFisica conexao;
+            while ((conexao = ociosas.pollFirst()) != null) {
+                if (expirada(conexao) || !valida(conexao)) {
+                    descartar(conexao);
+                    continue;
+                }
+                return embrulhar(conexao);
+            }
+            return embrulhar(abrir());
+        } catch (SQLException | RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+    }
+
+    public int getTotalConexoes() {
+        return total.get();
+    }
+
+    public int getConexoesOciosas() {
+        return ociosas.size();
+    }
+
+    public int getConexoesEmUso() {
+        return maximo - permissoes.availablePermits();
+    }
+
+    public int getMaximo() {
+        return maximo;
+    }
+
+    public void fechar() {
+        fechado = true;
+        manutencao.shutdownNow();
+        ConexaoFisica conexao;
+        while ((conexao = ociosas.pollFirst()) != null) {
+            descartar(conexao);
+        }
+    }
+
+    // ==================== CICLO DE VIDA DAS CONEXÕES FÍSICAS ====================
+
+    private ConexaoFisica abrir() throws SQLException {
+        Properties propriedades = new Properties();
+        propriedades.putAll(propriedadesDriver);
+        propriedades.setProperty("user", user);
+        propriedades.setProperty("password", password);
+
+        Connection conn = DriverManager.getConnection(url, propriedades);
+        total.incrementAndGet();
+        try {
+            return new ConexaoFisica(conn, conn.getTransactionIsolation(), comandosNoCacheDriver);
+        } catch (SQLException e) {
+            descartar(conn);
+            throw e;
+        }
+    }
+
+    private void descartar(ConexaoFisica conexao) {
+        descartar(conexao.conn);
+    }
+
+    private void descartar(Connection conn) {
+        total.decrementAndGet();
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private boolean expirada(ConexaoFisica conexao) {
+        return tempoVidaMaxMs > 0
+                && System.currentTimeMillis() - conexao.criadaEm >= tempoVidaMaxMs;
+    }
+
+    private boolean valida(ConexaoFisica conexao) {
+        if (System.currentTimeMillis() - conexao.ultimoUso < JANELA_SEM_VALIDACAO_MS) {
+            return true;
+        }
+        try {
+            return conexao.conn.isValid(timeoutValidacaoSeg);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void devolver(ConexaoFisica conexao) {
+        try {
+            if (fechado || conexao.conn.isClosed() || expirada(conexao)) {
+                descartar(conexao);
+                return;
+            }
+            // Nunca devolve ao pool uma transação aberta
+            if (!conexao.conn.getAutoCommit()) {
+                conexao.conn.rollback();
+                conexao.conn.setAutoCommit(true);
+            }
+            // Estado de sessão alterado pelo empréstimo não passa para o próximo
+            if (conexao.sessaoAlterada) {
+                conexao.conn.setReadOnly(false);
+                conexao.conn.setTransactionIsolation(conexao.isolamentoPadrao);
+                conexao.sessaoAlterada = false;
+            }
+            conexao.ultimoUso = System.currentTimeMillis();
+            ociosas.addFirst(conexao);
+        } catch (SQLException e) {
+            descartar(conexao);
+        } finally {
+            permissoes.release();
+        }
+    }
+
+    /**
+     * Executado periodicamente: remove conexões ociosas demais ou velhas demais
+     * e recompõe o mínimo configurado.
+     */
+    private void manter() {
+        try {
+            long agora = System.currentTimeMillis();
+            Iterator<ConexaoFisica> it = ociosas.descendingIterator();
+            while (it.hasNext()) {
+                ConexaoFisica conexao = it.next();
+                boolean ociosaDemais = tempoOciosoMaxMs > 0
+                        && agora - conexao.ultimoUso >= tempoOciosoMaxMs
+                        && total.get() > minimo;
+                if ((ociosaDemais || expirada(conexao)) && ociosas.removeLastOccurrence(conexao)) {
+                    descartar(conexao);
+                }
+            }
+
+            // Cada conexão aberta aqui ocupa uma vaga enquanto abre, como num empréstimo;
+            // sem isso a manutenção e os empréstimos juntos passariam do máximo
+            while (!fechado && total.get() < minimo && permissoes.tryAcquire()) {
+                try {
+                    ociosas.addLast(abrir());
+                } finally {
+                    permissoes.release();
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Falha na manutenção do pool de conexões: " + e.getMessage());
+        }
+    }
+
+    private Connection embrulhar(ConexaoFisica conexao) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConexaoEmprestada(conexao));
+    }
+
+    private static final class ConexaoFisica {
+        private final Connection conn;
+        private final int isolamentoPadrao;
+        private final long criadaEm;
+        private volatile long ultimoUso;
+        // setReadOnly/setTransactionIsolation chamados durante o empréstimo
+        private boolean sessaoAlterada;
+        // SQLs que o driver deve ter no cache desta conexão, em ordem de uso (LRU).
+        // Só quem tem a conexão emprestada mexe nele, então não precisa de trava.
+        private final Map<String, Boolean> comandosPreparados;
+
+        private ConexaoFisica(Connection conn, int isolamentoPadrao, int capacidadeComandos) {
+            this.conn = conn;
+            this.isolamentoPadrao = isolamentoPadrao;
+            this.criadaEm = System.currentTimeMillis();
+            this.ultimoUso = criadaEm;
+            this.comandosPreparados = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> maisAntigo) {
+                    return size() > capacidadeComandos;
+                }
+            };
+        }
+
+        // Acerto se o SQL já foi preparado nesta conexão e ainda não saiu do LRU
+        private boolean registrarPreparo(String sql) {
+            return comandosPreparados.put(sql, Boolean.TRUE) != null;
+        }
+    }
+
+    private final class ConexaoEmprestada implements InvocationHandler {
+        private final ConexaoFisica conexao;
+        private boolean devolvida;
+
+        private ConexaoEmprestada(ConexaoFisica conexao) {
+            this.conexao = conexao;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devolvida) {
+                        devolvida = true;
+                        devolver(conexao);
+                    }
+                    return null;
+                case "isClosed":
+                    return devolvida || conexao.conn.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexaoEmprestada[" + conexao.conn + "]";
+                default:
+                    break;
+            }
+
+            if (devolvida) {
+                throw new SQLException("Conexão já devolvida ao pool");
+            }
+            if ("setReadOnly".equals(method.getName()) || "setTransactionIsolation".equals(method.getName())) {
+                conexao.sessaoAlterada = true;
+            }
+            if (Metricas.HABILITADAS && method.getName().startsWith("prepare")
+                    && args != null && args[0] instanceof String sql) {
+                Metricas.comandoPreparado(conexao.registrarPreparo(sql));
+            }
+
+            Object resultado;
+            try {
+                resultado = method.invoke(conexao.conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (Metricas.HABILITADAS && resultado instanceof Statement) {
+                // prepareStatement/prepareCall recebem o SQL; createStatement o recebe no execute
+                String sql = args != null && args.length > 0 && args[0] instanceof String texto ? texto : null;
+                return Proxy.newProxyInstance(
+                        Statement.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()},
+                        new ComandoMedido((Statement) resultado, sql));
+            }
+            return resultado;
+        }
+    }
+
+    /**
+     * Mede a duração de cada execute* do comando e registra em Metricas pelo texto do SQL.
+     */
+    private static final class ComandoMedido implements InvocationHandler {
+        private final Statement comando;
+        private final String sql;
+
+        private ComandoMedido(Statement comando, String sql) {
+            this.comando = comando;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            if (!method.getName().startsWith("execute")) {
+                try {
+                    return method.invoke(comando, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            String texto = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+            long inicio = System.nanoTime();
+            boolean erro = true;
+            try {
+                Object resultado = method.invoke(comando, args);
+                erro = false;
+                return resultado;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (texto != null) {
+                    Metricas.comandoSql(texto, System.nanoTime() - inicio, erro);
+                }
+            }
+        }
+    }
+}
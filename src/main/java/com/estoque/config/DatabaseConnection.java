@@ -1,50 +1,117 @@
 package com.estoque.config;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 public class DatabaseConnection {
-    
-    // NÃO guardar conexão estática
-    // private static Connection connection = null;
-    
-    public static Connection getConnection() {
-        try {
-            // URL padrão pensada para rodar em Docker (serviço 'db')
-            String url = System.getenv("DATABASE_URL") != null
-                    ? System.getenv("DATABASE_URL")
-                    : "jdbc:postgresql://db:5432/estoque";
 
-            String user = System.getenv("DB_USER") != null
-                    ? System.getenv("DB_USER")
-                    : "admin";
+    @FunctionalInterface
+    public interface Transacao<T> {
+        T executar(Connection conn) throws SQLException;
+    }
 
-            String password = System.getenv("DB_PASSWORD") != null
-                    ? System.getenv("DB_PASSWORD")
-                    : "admin123";
+    // Pool criado sob demanda no primeiro uso
+    private static volatile ConnectionPool pool;
 
-            // Registra o driver (só precisa fazer uma vez, mas não faz mal chamar sempre)
+    private static ConnectionPool criarPool() {
+        try {
+            // Registra o driver uma única vez
             Class.forName("org.postgresql.Driver");
-
-            // SEMPRE cria uma nova conexão
-            Connection conn = DriverManager.getConnection(url, user, password);
-            
-            System.out.println("✓ Nova conexão com banco de dados estabelecida!");
-            
-            return conn;
-
         } catch (ClassNotFoundException e) {
             System.err.println("Driver PostgreSQL não encontrado!");
-            e.printStackTrace();
             throw new RuntimeException("Driver PostgreSQL não encontrado", e);
+        }
+
+        // URL padrão pensada para rodar em Docker (serviço 'db')
+        String url = Env.get("DATABASE_URL", "jdbc:postgresql://db:5432/estoque");
+        String user = Env.get("DB_USER", "admin");
+        String password = Env.get("DB_PASSWORD", "admin123");
+
+        int minimo = Env.getInt("DB_POOL_MIN", 2);
+        int maximo = Env.getInt("DB_POOL_MAX", 10);
+
+        // Cache de comandos preparados do driver, por SQL e por conexão física: após
+        // prepareThreshold execuções o comando vira um statement nomeado no servidor
+        Properties driver = new Properties();
+        driver.setProperty("prepareThreshold", String.valueOf(Env.getInt("DB_PREPARE_THRESHOLD", 5)));
+        driver.setProperty("preparedStatementCacheQueries",
+                String.valueOf(Env.getInt("DB_STATEMENT_CACHE_QUERIES", 256)));
+        driver.setProperty("preparedStatementCacheSizeMiB",
+                String.valueOf(Env.getInt("DB_STATEMENT_CACHE_MIB", 5)));
+
+        ConnectionPool pool = new ConnectionPool(
+                url, user, password,
+                minimo, maximo,
+                Env.getLong("DB_POOL_TIMEOUT_MS", 5_000),
+                Env.getLong("DB_POOL_IDLE_TIMEOUT_MS", 600_000),
+                Env.getLong("DB_POOL_MAX_LIFETIME_MS", 1_800_000),
+                Env.getInt("DB_POOL_VALIDATION_TIMEOUT_S", 2),
+                driver
+        );
+
+        Metricas.registrarMedidor("estoque_db_pool_connections_active", "Conexões emprestadas no momento", pool::getConexoesEmUso);
+        Metricas.registrarMedidor("estoque_db_pool_connections_idle", "Conexões ociosas no pool", pool::getConexoesOciosas);
+        Metricas.registrarMedidor("estoque_db_pool_connections_max", "Limite de conexões do pool", pool::getMaximo);
+
+        System.out.println("✓ Pool de conexões criado (min=" + minimo + ", max=" + maximo + ")");
+        return pool;
+    }
+
+    /**
+     * Empresta uma conexão do pool. Fechar a conexão (try-with-resources)
+     * devolve a conexão física ao pool.
+     */
+    public static Connection getConnection() {
+        try {
+            return getPool().getConnection();
         } catch (SQLException e) {
-            System.err.println("Erro ao conectar ao banco de dados!");
-            e.printStackTrace();
+            System.err.println("Erro ao obter conexão com o banco de dados: " + e.getMessage());
             throw new RuntimeException("Erro ao conectar ao banco de dados", e);
         }
     }
-    
-    // Não precisa mais de closeConnection global
-    // Cada repository deve fechar sua própria conexão no try-with-resources
+
+    /**
+     * Executa o trabalho em uma única transação: commit se terminar normalmente,
+     * rollback se lançar qualquer exceção. As versões das tabelas escritas
+     * (VersaoDados) só sobem depois do commit.
+     */
+    public static <T> T emTransacao(Transacao<T> trabalho) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                T resultado = trabalho.executar(conn);
+                conn.commit();
+                VersaoDados.confirmar();
+                return resultado;
+            } catch (SQLException | RuntimeException e) {
+                VersaoDados.descartar();
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro na transação com o banco de dados", e);
+        }
+    }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool atual = pool;
+        if (atual == null) {
+            synchronized (DatabaseConnection.class) {
+                atual = pool;
+                if (atual == null) {
+                    atual = criarPool();
+                    pool = atual;
+                }
+            }
+        }
+        return atual;
+    }
+
+    public static void fechar() {
+        ConnectionPool atual = pool;
+        if (atual != null) {
+            atual.fechar();
+        }
+    }
 }
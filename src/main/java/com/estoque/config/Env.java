@@ -0,0 +1,43 @@
+package com.estoque.config;
+
+/**
+ * Leitura centralizada das variaveis de ambiente, sempre com valor padrao.
+ */
+public final class Env {
+
+    private Env() {}
+
+    public static String get(String nome, String padrao) {
+        String valor = System.getenv(nome);
+        return valor != null && !valor.isBlank() ? valor.trim() : padrao;
+    }
+
+    public static int getInt(String nome, int padrao) {
+        String valor = get(nome, null);
+        if (valor == null) {
+            return padrao;
+        }
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Valor inválido para " + nome + ": " + valor, e);
+        }
+    }
+
+    public static long getLong(String nome, long padrao) {
+        String valor = get(nome, null);
+        if (valor == null) {
+            return padrao;
+        }
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Valor inválido para " + nome + ": " + valor, e);
+        }
+    }
+
+    public static boolean getBoolean(String nome, boolean padrao) {
+        String valor = get(nome, null);
+        return valor != null ? Boolean.parseBoolean(valor) : padrao;
+    }
+}
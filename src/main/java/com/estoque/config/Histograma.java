@@ -0,0 +1,97 @@
+package com.estoque.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências com faixas logarítmicas, sem travas.
+ *
+ * Cada potência de 2 (em microssegundos) é dividida em 4 faixas, então os
+ * percentis têm erro de no máximo 25% para cima. Os valores são acumulados
+ * desde o início do processo.
+ */
+public final class Histograma {
+
+    private static final int SUBFAIXAS_BITS = 2;
+    private static final int SUBFAIXAS = 1 << SUBFAIXAS_BITS;
+    private static final int MAIOR_EXPOENTE = 40;   // 2^40 µs, cerca de 12 dias
+    private static final int FAIXAS = (MAIOR_EXPOENTE - SUBFAIXAS_BITS + 2) * SUBFAIXAS;
+
+    private final AtomicLongArray faixas = new AtomicLongArray(FAIXAS);
+    private final LongAdder contagem = new LongAdder();
+    private final LongAdder somaNanos = new LongAdder();
+    private final AtomicLong maximoNanos = new AtomicLong();
+
+    public void registrar(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        faixas.incrementAndGet(faixa(nanos / 1_000));
+        contagem.increment();
+        somaNanos.add(nanos);
+
+        long maximo = maximoNanos.get();
+        while (nanos > maximo && !maximoNanos.compareAndSet(maximo, nanos)) {
+            maximo = maximoNanos.get();
+        }
+    }
+
+    public long getContagem() {
+        return contagem.sum();
+    }
+
+    public long getSomaNanos() {
+        return somaNanos.sum();
+    }
+
+    public long getMaximoNanos() {
+        return maximoNanos.get();
+    }
+
+    /**
+     * Limite superior da faixa que contém o percentil q (0 a 1), em nanossegundos.
+     * Nunca passa do máximo registrado.
+     */
+    public long percentilNanos(double q) {
+        long[] copia = new long[FAIXAS];
+        long total = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            copia[i] = faixas.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long posicao = Math.max(1, (long) Math.ceil(q * total));
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= posicao) {
+                return Math.min(inicioDaFaixa(i + 1) * 1_000, maximoNanos.get());
+            }
+        }
+        return maximoNanos.get();
+    }
+
+    // Valores abaixo de 2^SUBFAIXAS_BITS têm faixa própria; acima, 4 faixas por potência de 2
+    private static int faixa(long micros) {
+        if (micros < SUBFAIXAS) {
+            return (int) micros;
+        }
+        int expoente = Math.min(63 - Long.numberOfLeadingZeros(micros), MAIOR_EXPOENTE);
+        int sub = (int) ((micros >>> (expoente - SUBFAIXAS_BITS)) & (SUBFAIXAS - 1));
+        return (expoente - SUBFAIXAS_BITS + 1) * SUBFAIXAS + sub;
+    }
+
+    private static long inicioDaFaixa(int faixa) {
+        int grupo = faixa / SUBFAIXAS;
+        int sub = faixa % SUBFAIXAS;
+        if (grupo == 0) {
+            return sub;
+        }
+        int expoente = grupo + SUBFAIXAS_BITS - 1;
+        return (1L << expoente) + ((long) sub << (expoente - SUBFAIXAS_BITS));
+    }
+}
@@ -0,0 +1,271 @@
+package com.estoque.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Métricas do processo: latência e contagem por rota HTTP, por comando SQL e
+ * tempo de aquisição de conexões do pool. Exportadas em formato texto do
+ * Prometheus por /api/metrics.
+ *
+ * O registro é sem travas (LongAdder, AtomicLongArray). O número de rotas e de
+ * comandos distintos é limitado; o excedente é somado em um rótulo "outras".
+ */
+public final class Metricas {
+
+    public static final boolean HABILITADAS = Env.getBoolean("METRICAS", true);
+
+    private static final int MAX_SERIES = 500;
+    private static final int MAX_TAMANHO_SQL = 200;
+    private static final String OUTRAS = "outras";
+    private static final double[] PERCENTIS = {0.5, 0.95, 0.99};
+
+    private record Rota(String caminho, String metodo) {}
+
+    private static final class MetricaRota {
+        final Histograma latencia = new Histograma();
+        final Map<Integer, LongAdder> porStatus = new ConcurrentHashMap<>();
+    }
+
+    private static final class MetricaSql {
+        final Histograma latencia = new Histograma();
+        final LongAdder erros = new LongAdder();
+    }
+
+    private record Medidor(String ajuda, LongSupplier valor) {}
+
+    // Valores por conjunto de rótulos já formatado (ver rotulo)
+    private record MedidorRotulado(String ajuda, Supplier<Map<String, Long>> valores) {}
+
+    private static final Map<Rota, MetricaRota> ROTAS = new ConcurrentHashMap<>();
+    private static final Map<String, MetricaSql> COMANDOS = new ConcurrentHashMap<>();
+    // SQL original -> rótulo normalizado; os textos vêm de constantes, então o mapa fica pequeno
+    private static final Map<String, String> ROTULOS_SQL = new ConcurrentHashMap<>();
+    private static final Histograma AQUISICAO = new Histograma();
+    private static final LongAdder AQUISICAO_FALHAS = new LongAdder();
+    private static final LongAdder COMANDOS_REAPROVEITADOS = new LongAdder();
+    private static final LongAdder COMANDOS_PREPARADOS = new LongAdder();
+    private static final Histograma ESPERA_TRAVAS = new Histograma();
+    private static final LongAdder TRAVAS_DISPUTADAS = new LongAdder();
+    private static final LongAdder TRAVAS_DESISTENCIAS = new LongAdder();
+    // Nome do cache -> {acertos, faltas}
+    private static final Map<String, LongAdder[]> CACHES = new ConcurrentHashMap<>();
+    private static final Map<String, Medidor> MEDIDORES = new ConcurrentHashMap<>();
+    private static final Map<String, MedidorRotulado> MEDIDORES_ROTULADOS = new ConcurrentHashMap<>();
+
+    private Metricas() {}
+
+    // ==================== REGISTRO ====================
+
+    public static void requisicao(String caminho, String metodo, int status, long nanos) {
+        MetricaRota metrica = limitado(ROTAS, new Rota(caminho, metodo), new Rota(OUTRAS, metodo), MetricaRota::new);
+        metrica.latencia.registrar(nanos);
+        metrica.porStatus.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    public static void comandoSql(String sql, long nanos, boolean erro) {
+        String rotulo = ROTULOS_SQL.get(sql);
+        if (rotulo == null) {
+            rotulo = normalizarSql(sql);
+            if (ROTULOS_SQL.size() < MAX_SERIES) {
+                ROTULOS_SQL.put(sql, rotulo);
+            }
+        }
+        MetricaSql metrica = limitado(COMANDOS, rotulo, OUTRAS, MetricaSql::new);
+        metrica.latencia.registrar(nanos);
+        if (erro) {
+            metrica.erros.increment();
+        }
+    }
+
+    public static void aquisicaoConexao(long nanos, boolean obtida) {
+        AQUISICAO.registrar(nanos);
+        if (!obtida) {
+            AQUISICAO_FALHAS.increment();
+        }
+    }
+
+    /**
+     * prepareStatement de um SQL que já está (reaproveitado) ou não no cache de comandos
+     * do driver para aquela conexão física.
+     */
+    public static void comandoPreparado(boolean reaproveitado) {
+        (reaproveitado ? COMANDOS_REAPROVEITADOS : COMANDOS_PREPARADOS).increment();
+    }
+
+    /**
+     * Espera pela trava de um produto (TravasPorProduto); 0 = obtida sem disputa.
+     */
+    public static void esperaTravaProduto(long nanos, boolean obtida) {
+        ESPERA_TRAVAS.registrar(nanos);
+        if (nanos > 0) {
+            TRAVAS_DISPUTADAS.increment();
+        }
+        if (!obtida) {
+            TRAVAS_DESISTENCIAS.increment();
+        }
+    }
+
+    /**
+     * Consulta por id a um cache de entidades (produtos, categorias): acerto ou ida ao banco.
+     */
+    public static void consultaCache(String cache, boolean acerto) {
+        LongAdder[] contadores = CACHES.get(cache);
+        if (contadores == null) {
+            contadores = CACHES.computeIfAbsent(cache, c -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        }
+        contadores[acerto ? 0 : 1].increment();
+    }
+
+    /**
+     * Valor lido na hora da exportação (conexões em uso, requisições em andamento...).
+     */
+    public static void registrarMedidor(String nome, String ajuda, LongSupplier valor) {
+        MEDIDORES.put(nome, new Medidor(ajuda, valor));
+    }
+
+    /**
+     * Como registrarMedidor, com uma série por chave do mapa. As chaves são rótulos
+     * montados com rotulo(...) e unidos por vírgula.
+     */
+    public static void registrarMedidorRotulado(String nome, String ajuda, Supplier<Map<String, Long>> valores) {
+        MEDIDORES_ROTULADOS.put(nome, new MedidorRotulado(ajuda, valores));
+    }
+
+    public static String rotulo(String nome, Object valor) {
+        return nome + "=\"" + escapar(String.valueOf(valor)) + "\"";
+    }
+
+    private static <K, V> V limitado(Map<K, V> mapa, K chave, K excedente, Supplier<V> novo) {
+        V valor = mapa.get(chave);
+        if (valor != null) {
+            return valor;
+        }
+        K efetiva = mapa.size() < MAX_SERIES ? chave : excedente;
+        return mapa.computeIfAbsent(efetiva, k -> novo.get());
+    }
+
+    private static String normalizarSql(String sql) {
+        String rotulo = sql.replaceAll("\\s+", " ").trim();
+        return rotulo.length() > MAX_TAMANHO_SQL ? rotulo.substring(0, MAX_TAMANHO_SQL) + "..." : rotulo;
+    }
+
+    // ==================== EXPORTAÇÃO (PROMETHEUS) ====================
+
+    public static String exportar() {
+        StringBuilder sb = new StringBuilder(4096);
+
+        Map<String, MetricaRota> rotas = new TreeMap<>();
+        ROTAS.forEach((r, m) -> rotas.put(
+                "route=\"" + escapar(r.caminho()) + "\",method=\"" + escapar(r.metodo()) + "\"", m));
+
+        cabecalho(sb, "estoque_http_requests_total", "counter", "Requisições HTTP por rota, método e status");
+        rotas.forEach((rotulos, m) -> new TreeMap<>(m.porStatus).forEach((status, n) ->
+                linha(sb, "estoque_http_requests_total", rotulos + ",status=\"" + status + "\"", n.sum())));
+
+        List<Map.Entry<String, Histograma>> latencias = new ArrayList<>();
+        rotas.forEach((rotulos, m) -> latencias.add(Map.entry(rotulos, m.latencia)));
+        resumo(sb, "estoque_http_request_duration_seconds", "Latência das requisições HTTP por rota", latencias);
+
+        Map<String, MetricaSql> comandos = new TreeMap<>();
+        COMANDOS.forEach((sql, m) -> comandos.put("query=\"" + escapar(sql) + "\"", m));
+
+        List<Map.Entry<String, Histograma>> consultas = new ArrayList<>();
+        comandos.forEach((rotulos, m) -> consultas.add(Map.entry(rotulos, m.latencia)));
+        resumo(sb, "estoque_db_query_duration_seconds", "Latência de execução dos comandos SQL", consultas);
+
+        cabecalho(sb, "estoque_db_query_errors_total", "counter", "Comandos SQL que terminaram em erro");
+        comandos.forEach((rotulos, m) -> linha(sb, "estoque_db_query_errors_total", rotulos, m.erros.sum()));
+
+        resumo(sb, "estoque_db_pool_acquire_duration_seconds", "Espera para obter conexão do pool",
+                List.of(Map.entry("", AQUISICAO)));
+        cabecalho(sb, "estoque_db_pool_acquire_failures_total", "counter", "Falhas ao obter conexão do pool");
+        linha(sb, "estoque_db_pool_acquire_failures_total", "", AQUISICAO_FALHAS.sum());
+
+        long acertos = COMANDOS_REAPROVEITADOS.sum();
+        long faltas = COMANDOS_PREPARADOS.sum();
+        cabecalho(sb, "estoque_db_statement_cache_hits_total", "counter", "prepareStatement de SQL já no cache do driver para a conexão");
+        linha(sb, "estoque_db_statement_cache_hits_total", "", acertos);
+        cabecalho(sb, "estoque_db_statement_cache_misses_total", "counter", "prepareStatement que o driver precisou analisar de novo");
+        linha(sb, "estoque_db_statement_cache_misses_total", "", faltas);
+        cabecalho(sb, "estoque_db_statement_cache_hit_ratio", "gauge", "Fração de prepareStatement atendidos pelo cache do driver");
+        linha(sb, "estoque_db_statement_cache_hit_ratio", "", acertos + faltas > 0 ? (double) acertos / (acertos + faltas) : 0.0);
+
+        resumo(sb, "estoque_product_lock_wait_seconds", "Espera pela trava do produto ao registrar movimentações",
+                List.of(Map.entry("", ESPERA_TRAVAS)));
+        cabecalho(sb, "estoque_product_lock_contended_total", "counter", "Travas de produto que precisaram esperar");
+        linha(sb, "estoque_product_lock_contended_total", "", TRAVAS_DISPUTADAS.sum());
+        cabecalho(sb, "estoque_product_lock_timeouts_total", "counter", "Movimentações recusadas por esperar demais pela trava");
+        linha(sb, "estoque_product_lock_timeouts_total", "", TRAVAS_DESISTENCIAS.sum());
+
+        Map<String, LongAdder[]> caches = new TreeMap<>();
+        CACHES.forEach((nome, contadores) -> caches.put("cache=\"" + escapar(nome) + "\"", contadores));
+        cabecalho(sb, "estoque_cache_hits_total", "counter", "Consultas por id atendidas pelo cache da entidade");
+        caches.forEach((rotulos, c) -> linha(sb, "estoque_cache_hits_total", rotulos, c[0].sum()));
+        cabecalho(sb, "estoque_cache_misses_total", "counter", "Consultas por id que foram ao banco");
+        caches.forEach((rotulos, c) -> linha(sb, "estoque_cache_misses_total", rotulos, c[1].sum()));
+        cabecalho(sb, "estoque_cache_hit_ratio", "gauge", "Fração das consultas por id atendidas pelo cache");
+        caches.forEach((rotulos, c) -> {
+            long acertosCache = c[0].sum();
+            long total = acertosCache + c[1].sum();
+            linha(sb, "estoque_cache_hit_ratio", rotulos, total > 0 ? (double) acertosCache / total : 0.0);
+        });
+
+        new TreeMap<>(MEDIDORES).forEach((nome, medidor) -> {
+            cabecalho(sb, nome, "gauge", medidor.ajuda());
+            linha(sb, nome, "", medidor.valor().getAsLong());
+        });
+        new TreeMap<>(MEDIDORES_ROTULADOS).forEach((nome, medidor) -> {
+            cabecalho(sb, nome, "gauge", medidor.ajuda());
+            medidor.valores().get().forEach((rotulos, valor) -> linha(sb, nome, rotulos, valor));
+        });
+        return sb.toString();
+    }
+
+    // Percentis, soma e contagem no formato summary; o máximo vai em um gauge à parte
+    private static void resumo(StringBuilder sb, String nome, String ajuda, List<Map.Entry<String, Histograma>> series) {
+        cabecalho(sb, nome, "summary", ajuda);
+        for (Map.Entry<String, Histograma> serie : series) {
+            String rotulos = serie.getKey();
+            Histograma h = serie.getValue();
+            String separador = rotulos.isEmpty() ? "" : rotulos + ",";
+            for (double q : PERCENTIS) {
+                linha(sb, nome, separador + "quantile=\"" + q + "\"", segundos(h.percentilNanos(q)));
+            }
+            linha(sb, nome + "_sum", rotulos, segundos(h.getSomaNanos()));
+            linha(sb, nome + "_count", rotulos, h.getContagem());
+        }
+
+        cabecalho(sb, nome + "_max", "gauge", ajuda + " (máximo desde o início)");
+        for (Map.Entry<String, Histograma> serie : series) {
+            linha(sb, nome + "_max", serie.getKey(), segundos(serie.getValue().getMaximoNanos()));
+        }
+    }
+
+    private static void cabecalho(StringBuilder sb, String nome, String tipo, String ajuda) {
+        sb.append("# HELP ").append(nome).append(' ').append(ajuda).append('\n');
+        sb.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+    }
+
+    private static void linha(StringBuilder sb, String nome, String rotulos, Object valor) {
+        sb.append(nome);
+        if (!rotulos.isEmpty()) {
+            sb.append('{').append(rotulos).append('}');
+        }
+        sb.append(' ').append(valor).append('\n');
+    }
+
+    private static double segundos(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static String escapar(String valor) {
+        return valor.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,112 @@
+package com.estoque.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Aplica na inicialização as migrações de esquema ainda não registradas
+ * na tabela schema_version, cada uma em sua própria transação.
+ *
+ * Para adicionar uma migração: criar src/main/resources/db/migration/V{n}__nome.sql
+ * e incluir a entrada correspondente em MIGRACOES, sempre com versão crescente.
+ */
+public class SchemaMigrator {
+
+    // Chave do pg_advisory_lock: só uma instância migra por vez
+    private static final long CHAVE_TRAVA = 0x657374_6f717565L;
+
+    private record Migracao(int versao, String descricao, String recurso) {}
+
+    private static final List<Migracao> MIGRACOES = List.of(
+            new Migracao(1, "esquema inicial", "db/migration/V1__esquema_inicial.sql"),
+            new Migracao(2, "indices de desempenho", "db/migration/V2__indices_desempenho.sql"),
+            new Migracao(3, "particionamento mensal de movimentacoes", "db/migration/V3__particionamento_movimentacoes.sql"),
+            new Migracao(4, "chaves de idempotencia", "db/migration/V4__chaves_idempotencia.sql")
+    );
+
+    public void migrar() {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            stmt.execute("SELECT pg_advisory_lock(" + CHAVE_TRAVA + ")");
+            try {
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        versao      INTEGER      PRIMARY KEY,
+                        descricao   VARCHAR(200) NOT NULL,
+                        aplicada_em TIMESTAMP    NOT NULL DEFAULT now()
+                    )
+                    """);
+
+                int atual = versaoAtual(conn);
+                for (Migracao migracao : MIGRACOES) {
+                    if (migracao.versao() > atual) {
+                        aplicar(conn, migracao);
+                        atual = migracao.versao();
+                    }
+                }
+                System.out.println("✓ Esquema do banco na versão " + atual);
+            } finally {
+                stmt.execute("SELECT pg_advisory_unlock(" + CHAVE_TRAVA + ")");
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao migrar o esquema do banco de dados", e);
+        }
+    }
+
+    private int versaoAtual(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(versao), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void aplicar(Connection conn, Migracao migracao) throws SQLException {
+        String script = carregar(migracao.recurso());
+        long inicio = System.nanoTime();
+
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement registro = conn.prepareStatement(
+                     "INSERT INTO schema_version (versao, descricao) VALUES (?, ?)")) {
+
+            // O driver divide o script em comandos respeitando blocos $$ ... $$
+            stmt.execute(script);
+
+            registro.setInt(1, migracao.versao());
+            registro.setString(2, migracao.descricao());
+            registro.executeUpdate();
+
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Falha na migração V" + migracao.versao()
+                    + " (" + migracao.descricao() + "): " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        System.out.println("✓ Migração V" + migracao.versao() + " aplicada: " + migracao.descricao()
+                + " (" + (System.nanoTime() - inicio) / 1_000_000 + " ms)");
+    }
+
+    private String carregar(String recurso) {
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(recurso)) {
+            if (in == null) {
+                throw new IllegalStateException("Migração não encontrada no classpath: " + recurso);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao ler migração " + recurso, e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.estoque.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Versão dos dados de cada tabela, incrementada pelos métodos de escrita dos
+ * repositórios depois do commit. Serve para montar ETags sem consultar o banco.
+ *
+ * A versão só sobe depois que a escrita está visível: quem lê a versão antes de
+ * consultar nunca recebe dados mais antigos do que ela.
+ */
+public final class VersaoDados {
+
+    public enum Tabela { PRODUTOS, CATEGORIAS, MOVIMENTACOES }
+
+    // Muda a cada inicialização, já que os contadores recomeçam do zero
+    private static final String EPOCA = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final AtomicLongArray VERSOES = new AtomicLongArray(Tabela.values().length);
+
+    // Tabelas escritas na transação em andamento (ver DatabaseConnection.emTransacao)
+    private static final ThreadLocal<Set<Tabela>> PENDENTES = ThreadLocal.withInitial(() -> EnumSet.noneOf(Tabela.class));
+
+    private VersaoDados() {}
+
+    public static long atual(Tabela tabela) {
+        return VERSOES.get(tabela.ordinal());
+    }
+
+    // Escrita em autocommit, já confirmada
+    public static void alterada(Tabela tabela) {
+        VERSOES.incrementAndGet(tabela.ordinal());
+    }
+
+    /**
+     * Escrita feita na conexão informada: sobe a versão agora se ela estiver em
+     * autocommit, ou só no commit da transação.
+     */
+    public static void alterada(Connection conn, Tabela tabela) throws SQLException {
+        if (conn.getAutoCommit()) {
+            alterada(tabela);
+        } else {
+            PENDENTES.get().add(tabela);
+        }
+    }
+
+    static void confirmar() {
+        Set<Tabela> pendentes = PENDENTES.get();
+        for (Tabela tabela : pendentes) {
+            alterada(tabela);
+        }
+        pendentes.clear();
+    }
+
+    static void descartar() {
+        PENDENTES.get().clear();
+    }
+
+    /**
+     * ETag forte com o identificador desta execução e o token informado.
+     */
+    public static String etag(String token) {
+        return "\"" + EPOCA + "-" + token + "\"";
+    }
+}
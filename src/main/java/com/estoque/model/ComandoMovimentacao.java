@@ -0,0 +1,12 @@
+package com.estoque.model;
+
+import java.time.LocalDate;
+
+/**
+ * Pedido de movimentação recebido pela API, antes de ser aplicado ao estoque.
+ */
+public record ComandoMovimentacao(Long produtoId,
+                                  TipoMovimentacao tipo,
+                                  int quantidade,
+                                  LocalDate data) {
+}
@@ -0,0 +1,140 @@
+package com.estoque.repository;
+
+import com.estoque.config.Metricas;
+import com.estoque.config.VersaoDados;
+import com.estoque.model.Categoria;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de leitura das categorias, carregado por inteiro na primeira consulta.
+ *
+ * As instâncias devolvidas são compartilhadas (entre requisições e entre os
+ * produtos que apontam para a mesma categoria) e não podem ser alteradas.
+ * Quem grava categorias deve chamar invalidar() depois do commit.
+ */
+public class CategoriaCache {
+
+    // versao = VersaoDados de categorias lida antes da carga
+    private record Dicionario(Map<Long, Categoria> porId, List<Categoria> ordenadas, long versao) {}
+
+    private final CategoriaRepository categoriaRepository;
+    private final AtomicLong geracao = new AtomicLong();
+    private volatile Dicionario dicionario;
+
+    public CategoriaCache(CategoriaRepository categoriaRepository) {
+        this.categoriaRepository = categoriaRepository;
+    }
+
+    // Ordenadas por nome, como CategoriaRepository.buscarTodos()
+    public List<Categoria> buscarTodos() {
+        return carregado().ordenadas();
+    }
+
+    public Categoria buscarPorId(Long id) {
+        boolean carregadoAntes = dicionario != null;
+        Categoria categoria = carregado().porId().get(id);
+        Metricas.consultaCache("categorias", carregadoAntes && categoria != null);
+        if (categoria != null) {
+            return categoria;
+        }
+        // Categoria criada por fora da API: lê só ela e recarrega o resto na próxima consulta
+        Categoria lida = categoriaRepository.buscarPorId(id);
+        if (lida == null) {
+            return null;
+        }
+        invalidar();
+        return imutavel(lida);
+    }
+
+    /**
+     * Mapa id -> categoria do momento, para anexar a vários produtos de uma vez.
+     */
+    public Map<Long, Categoria> dicionario() {
+        return carregado().porId();
+    }
+
+    /**
+     * Versão das categorias que o cache está servindo, para ETags. Nunca é mais
+     * nova que os dados do cache, mesmo logo após uma escrita ainda não invalidada.
+     */
+    public long versao() {
+        return carregado().versao();
+    }
+
+    public synchronized void invalidar() {
+        geracao.incrementAndGet();
+        dicionario = null;
+    }
+
+    private Dicionario carregado() {
+        Dicionario atual = dicionario;
+        if (atual != null) {
+            return atual;
+        }
+
+        long geracaoAntes = geracao.get();
+        long versao = VersaoDados.atual(VersaoDados.Tabela.CATEGORIAS);
+        List<Categoria> lidas = categoriaRepository.buscarTodos();
+
+        Map<Long, Categoria> porId = new HashMap<>(lidas.size() * 4 / 3 + 1);
+        Categoria[] ordenadas = new Categoria[lidas.size()];
+        for (int i = 0; i < ordenadas.length; i++) {
+            ordenadas[i] = imutavel(lidas.get(i));
+            porId.put(ordenadas[i].getId(), ordenadas[i]);
+        }
+        Dicionario novo = new Dicionario(Collections.unmodifiableMap(porId), List.of(ordenadas), versao);
+
+        // Uma invalidação durante a leitura pode não estar refletida; não publica
+        synchronized (this) {
+            if (geracao.get() == geracaoAntes) {
+                dicionario = novo;
+            }
+        }
+        return novo;
+    }
+
+    private static Categoria imutavel(Categoria c) {
+        return new CategoriaImutavel(c.getId(), c.getNome(), c.getDescricao(), c.getTamanho(), c.getEmbalagem());
+    }
+
+    private static final class CategoriaImutavel extends Categoria {
+
+        CategoriaImutavel(Long id, String nome, String descricao, String tamanho, String embalagem) {
+            super(id, nome, descricao, tamanho, embalagem);
+        }
+
+        @Override
+        public void setId(Long id) {
+            throw somenteLeitura();
+        }
+
+        @Override
+        public void setNome(String nome) {
+            throw somenteLeitura();
+        }
+
+        @Override
+        public void setDescricao(String descricao) {
+            throw somenteLeitura();
+        }
+
+        @Override
+        public void setTamanho(String tamanho) {
+            throw somenteLeitura();
+        }
+
+        @Override
+        public void setEmbalagem(String embalagem) {
+            throw somenteLeitura();
+        }
+
+        private static UnsupportedOperationException somenteLeitura() {
+            return new UnsupportedOperationException("Categoria em cache não pode ser alterada");
+        }
+    }
+}
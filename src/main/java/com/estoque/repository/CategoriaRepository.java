@@ -1,6 +1,8 @@
 package com.estoque.repository;
 
 import com.estoque.config.DatabaseConnection;
+import com.estoque.config.VersaoDados;
+import com.estoque.config.VersaoDados.Tabela;
 import com.estoque.model.Categoria;
 
 import java.sql.*;
@@ -36,6 +38,7 @@ public class CategoriaRepository {
                     categoria.setId(rs.getLong("id"));
                 }
             }
+            VersaoDados.alterada(Tabela.CATEGORIAS);
             return categoria;
 
         } catch (SQLException e) {
@@ -50,7 +53,9 @@ public class CategoriaRepository {
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setLong(1, id);
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) {
+                VersaoDados.alterada(Tabela.CATEGORIAS);
+            }
 
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao remover categoria", e);
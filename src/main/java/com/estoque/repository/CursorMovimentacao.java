@@ -0,0 +1,10 @@
+package com.estoque.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Posição da última movimentação entregue, na ordem (data_movimentacao DESC, id DESC).
+ * A próxima página começa logo depois dela (paginação por keyset).
+ */
+public record CursorMovimentacao(LocalDate data, long id) {
+}
@@ -0,0 +1,17 @@
+package com.estoque.repository;
+
+import com.estoque.model.TipoMovimentacao;
+
+import java.time.LocalDate;
+
+/**
+ * Filtros opcionais (null = sem filtro) aplicados direto no WHERE das consultas
+ * de movimentações. O intervalo de datas é inclusivo nas duas pontas.
+ */
+public record FiltroMovimentacao(Long produtoId,
+                                 TipoMovimentacao tipo,
+                                 LocalDate de,
+                                 LocalDate ate) {
+
+    public static final FiltroMovimentacao NENHUM = new FiltroMovimentacao(null, null, null, null);
+}
@@ -0,0 +1,85 @@
+package com.estoque.repository;
+
+import com.estoque.config.DatabaseConnection;
+
+import java.sql.*;
+import java.time.Duration;
+
+public class IdempotenciaRepository {
+
+    /**
+     * Grava a resposta da chave na transação informada. Retorna false se a chave já
+     * existia e tem menos que tempoVida; uma linha vencida que a limpeza ainda não
+     * removeu é substituída. Se outra transação estiver gravando a mesma chave,
+     * espera ela terminar.
+     */
+    public boolean registrar(Connection conn, String chave, RespostaIdempotente resposta,
+                             Duration tempoVida) throws SQLException {
+        String sql = """
+            INSERT INTO chaves_idempotencia (chave, impressao, status, corpo)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (chave) DO UPDATE
+               SET impressao = EXCLUDED.impressao,
+                   status = EXCLUDED.status,
+                   corpo = EXCLUDED.corpo,
+                   criada_em = now()
+             WHERE chaves_idempotencia.criada_em < now() - make_interval(secs => ?)
+            """;
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, chave);
+            stmt.setString(2, resposta.impressao());
+            stmt.setInt(3, resposta.status());
+            stmt.setBytes(4, resposta.corpo());
+            stmt.setLong(5, tempoVida.toSeconds());
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Resposta gravada para a chave, ou null se não existe ou já tem mais que tempoVida.
+     */
+    public RespostaIdempotente buscar(String chave, Duration tempoVida) {
+        String sql = """
+            SELECT impressao, status, corpo, criada_em
+              FROM chaves_idempotencia
+             WHERE chave = ?
+               AND criada_em >= now() - make_interval(secs => ?)
+            """;
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, chave);
+            stmt.setLong(2, tempoVida.toSeconds());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new RespostaIdempotente(
+                        rs.getInt("status"),
+                        rs.getString("impressao"),
+                        rs.getBytes("corpo"),
+                        rs.getTimestamp("criada_em").getTime());
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar chave de idempotência", e);
+        }
+    }
+
+    public int removerAnteriores(Duration idade) {
+        String sql = "DELETE FROM chaves_idempotencia WHERE criada_em < now() - make_interval(secs => ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, idade.toSeconds());
+            return stmt.executeUpdate();
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao remover chaves de idempotência vencidas", e);
+        }
+    }
+}
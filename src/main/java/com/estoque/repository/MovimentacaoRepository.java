@@ -1,21 +1,30 @@
 package com.estoque.repository;
 
 import com.estoque.config.DatabaseConnection;
+import com.estoque.config.VersaoDados;
+import com.estoque.config.VersaoDados.Tabela;
 import com.estoque.model.Movimentacao;
 import com.estoque.model.Produto;
 import com.estoque.model.TipoMovimentacao;
 
+import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
 public class MovimentacaoRepository {
 
+    @FunctionalInterface
+    public interface ConsumidorMovimentacao {
+        void aceitar(Movimentacao movimentacao) throws IOException;
+    }
+
     public Movimentacao salvar(Movimentacao mov) {
         String sql;
         if (mov.getId() == null) {
             sql = "INSERT INTO movimentacoes " +
-                  "(produto_id, data_movimentacao, quantidade, tipo) " +
+                  "(produto_id, data_movimentacao, quantidade_movimentada, tipo_movimentacao) " +
                   "VALUES (?, ?, ?, ?) RETURNING id";
         } else {
             sql = "UPDATE movimentacoes SET produto_id = ?, data_movimentacao = ?, " +
@@ -40,6 +49,7 @@ public class MovimentacaoRepository {
                     mov.setId(rs.getLong("id"));
                 }
             }
+            VersaoDados.alterada(Tabela.MOVIMENTACOES);
             return mov;
 
         } catch (SQLException e) {
@@ -47,6 +57,64 @@ public class MovimentacaoRepository {
         }
     }
 
+    /**
+     * Insere a movimentação usando a conexão (e a transação) de quem chama.
+     */
+    public Movimentacao inserir(Connection conn, Movimentacao mov) throws SQLException {
+        String sql = "INSERT INTO movimentacoes " +
+                     "(produto_id, data_movimentacao, quantidade_movimentada, tipo_movimentacao) " +
+                     "VALUES (?, ?, ?, ?) RETURNING id";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, mov.getProduto().getId());
+            stmt.setDate(2, Date.valueOf(mov.getDataMovimentacao()));
+            stmt.setInt(3, mov.getQuantidadeMovimentada());
+            stmt.setObject(4, mov.getTipoMovimentacao(), Types.OTHER);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    mov.setId(rs.getLong("id"));
+                }
+            }
+            VersaoDados.alterada(conn, Tabela.MOVIMENTACOES);
+            return mov;
+        }
+    }
+
+    /**
+     * Insere várias movimentações com addBatch/executeBatch na transação de quem chama,
+     * preenchendo os ids gerados.
+     */
+    public void inserirLote(Connection conn, List<Movimentacao> movs) throws SQLException {
+        if (movs.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO movimentacoes " +
+                     "(produto_id, data_movimentacao, quantidade_movimentada, tipo_movimentacao) " +
+                     "VALUES (?, ?, ?, ?)";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql, new String[]{"id"})) {
+            for (Movimentacao mov : movs) {
+                stmt.setLong(1, mov.getProduto().getId());
+                stmt.setDate(2, Date.valueOf(mov.getDataMovimentacao()));
+                stmt.setInt(3, mov.getQuantidadeMovimentada());
+                stmt.setObject(4, mov.getTipoMovimentacao(), Types.OTHER);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            VersaoDados.alterada(conn, Tabela.MOVIMENTACOES);
+
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                for (Movimentacao mov : movs) {
+                    if (!rs.next()) {
+                        break;
+                    }
+                    mov.setId(rs.getLong(1));
+                }
+            }
+        }
+    }
+
     public List<Movimentacao> buscarTodos() {
         String sql = """
             SELECT m.*, p.nome AS produto_nome
@@ -71,6 +139,92 @@ public class MovimentacaoRepository {
         }
     }
 
+    /**
+     * Página de movimentações em ordem (data_movimentacao DESC, id DESC).
+     * Com cursor, continua a partir dele com (data, id) < (?, ?) em vez de OFFSET,
+     * então o custo de cada página não cresce com o histórico.
+     */
+    public List<Movimentacao> buscarPagina(FiltroMovimentacao filtro, CursorMovimentacao apos, int limite) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT m.*, p.nome AS produto_nome
+            FROM movimentacoes m
+            JOIN produtos p ON p.id = m.produto_id
+            WHERE TRUE""");
+        List<Object> parametros = new ArrayList<>();
+        adicionarFiltros(sql, parametros, filtro);
+        if (apos != null) {
+            // A primeira condição é redundante, mas só ela permite ao planner descartar as partições mais novas
+            sql.append(" AND m.data_movimentacao <= ? AND (m.data_movimentacao, m.id) < (?, ?)");
+            parametros.add(Date.valueOf(apos.data()));
+            parametros.add(Date.valueOf(apos.data()));
+            parametros.add(apos.id());
+        }
+        sql.append(" ORDER BY m.data_movimentacao DESC, m.id DESC LIMIT ?");
+        parametros.add(limite);
+
+        List<Movimentacao> lista = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            definirParametros(stmt, parametros);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapResultSet(rs));
+                }
+            }
+            return lista;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar movimentações", e);
+        }
+    }
+
+    /**
+     * Entrega ao consumidor todas as movimentações do filtro em ordem (data_movimentacao, id),
+     * uma de cada vez. Usa um cursor no servidor (autocommit desligado + fetchSize), então só
+     * tamanhoLote linhas ficam em memória, seja qual for o tamanho do histórico.
+     *
+     * Se o consumidor lançar IOException (cliente desconectou) a leitura para ali, o cursor é
+     * fechado e a exceção é repassada. Retorna quantas movimentações foram entregues.
+     */
+    public long exportar(FiltroMovimentacao filtro, int tamanhoLote, ConsumidorMovimentacao consumidor)
+            throws IOException {
+        StringBuilder sql = new StringBuilder("""
+            SELECT m.*, p.nome AS produto_nome
+            FROM movimentacoes m
+            JOIN produtos p ON p.id = m.produto_id
+            WHERE TRUE""");
+        List<Object> parametros = new ArrayList<>();
+        adicionarFiltros(sql, parametros, filtro);
+        sql.append(" ORDER BY m.data_movimentacao, m.id");
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // Sem transação aberta o driver traz o resultado inteiro de uma vez e ignora o fetchSize
+            // A transação só de leitura é desfeita pelo pool quando a conexão volta
+            conn.setAutoCommit(false);
+            long entregues = 0;
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(tamanhoLote);
+                definirParametros(stmt, parametros);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        consumidor.aceitar(mapResultSet(rs));
+                        entregues++;
+                    }
+                }
+            }
+            return entregues;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao exportar movimentações", e);
+        }
+    }
+
     public List<Movimentacao> buscarPorProduto(Long produtoId) {
         String sql = """
             SELECT m.*, p.nome AS produto_nome
@@ -99,12 +253,88 @@ public class MovimentacaoRepository {
         }
     }
 
+    /**
+     * Produto com o maior total movimentado do tipo informado, ou null se não houver
+     * movimentações. Agrega no banco e só então busca o nome do vencedor.
+     *
+     * de/ate (inclusivos, null = sem limite) restringem a soma ao intervalo e fazem
+     * o planner ler só as partições dos meses envolvidos.
+     */
+    public TotalPorProduto buscarMaiorTotalPorTipo(TipoMovimentacao tipo, LocalDate de, LocalDate ate) {
+        String sql = """
+            WITH totais AS (
+                SELECT produto_id, SUM(quantidade_movimentada) AS total
+                FROM movimentacoes
+                WHERE tipo_movimentacao = ?
+                  AND data_movimentacao >= COALESCE(?, '-infinity'::date)
+                  AND data_movimentacao <= COALESCE(?, 'infinity'::date)
+                GROUP BY produto_id
+                ORDER BY total DESC, produto_id
+                LIMIT 1
+            )
+            SELECT t.produto_id, p.nome AS produto_nome, t.total
+            FROM totais t
+            JOIN produtos p ON p.id = t.produto_id
+            """;
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setObject(1, tipo, Types.OTHER);
+            stmt.setDate(2, de != null ? Date.valueOf(de) : null);
+            stmt.setDate(3, ate != null ? Date.valueOf(ate) : null);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Produto p = new Produto();
+                p.setId(rs.getLong("produto_id"));
+                p.setNome(rs.getString("produto_nome"));
+                return new TotalPorProduto(p, rs.getLong("total"));
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao calcular totais de movimentação", e);
+        }
+    }
+
+    private static void adicionarFiltros(StringBuilder sql, List<Object> parametros, FiltroMovimentacao filtro) {
+        if (filtro.produtoId() != null) {
+            sql.append(" AND m.produto_id = ?");
+            parametros.add(filtro.produtoId());
+        }
+        if (filtro.tipo() != null) {
+            sql.append(" AND m.tipo_movimentacao = ?");
+            parametros.add(filtro.tipo());
+        }
+        if (filtro.de() != null) {
+            sql.append(" AND m.data_movimentacao >= ?");
+            parametros.add(Date.valueOf(filtro.de()));
+        }
+        if (filtro.ate() != null) {
+            sql.append(" AND m.data_movimentacao <= ?");
+            parametros.add(Date.valueOf(filtro.ate()));
+        }
+    }
+
+    private static void definirParametros(PreparedStatement stmt, List<Object> parametros) throws SQLException {
+        for (int i = 0; i < parametros.size(); i++) {
+            Object valor = parametros.get(i);
+            if (valor instanceof TipoMovimentacao tipo) {
+                stmt.setObject(i + 1, tipo, Types.OTHER);
+            } else {
+                stmt.setObject(i + 1, valor);
+            }
+        }
+    }
+
     private Movimentacao mapResultSet(ResultSet rs) throws SQLException {
         Movimentacao m = new Movimentacao();
         m.setId(rs.getLong("id"));
         m.setDataMovimentacao(rs.getDate("data_movimentacao").toLocalDate());
-        m.setQuantidadeMovimentada(rs.getInt("quantidade"));
-        m.setTipoMovimentacao(TipoMovimentacao.valueOf(rs.getString("tipo")));
+        m.setQuantidadeMovimentada(rs.getInt("quantidade_movimentada"));
+        m.setTipoMovimentacao(TipoMovimentacao.valueOf(rs.getString("tipo_movimentacao")));
 
         Produto p = new Produto();
         p.setId(rs.getLong("produto_id"));
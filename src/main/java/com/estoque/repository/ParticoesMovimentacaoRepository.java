@@ -0,0 +1,109 @@
+package com.estoque.repository;
+
+import com.estoque.config.DatabaseConnection;
+import com.estoque.config.VersaoDados;
+import com.estoque.config.VersaoDados.Tabela;
+
+import java.sql.*;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partições mensais de movimentacoes (movimentacoes_AAAA_MM, criadas pela migração V3).
+ *
+ * As alterações de partição pedem trava exclusiva na tabela mãe; com lock_timeout
+ * elas desistem em vez de enfileirar as requisições atrás de uma exportação longa.
+ */
+public class ParticoesMovimentacaoRepository {
+
+    public static final String ESQUEMA_ARQUIVO = "arquivo";
+
+    private static final DateTimeFormatter SUFIXO = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String TRAVA = "SET LOCAL lock_timeout = '5s'";
+
+    public boolean tabelaParticionada() {
+        String sql = "SELECT relkind FROM pg_class WHERE oid = to_regclass('movimentacoes')";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            return rs.next() && "p".equals(rs.getString(1));
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao verificar partições de movimentações", e);
+        }
+    }
+
+    /**
+     * Cria a partição do mês se ainda não existir. Retorna true se criou.
+     */
+    public boolean criar(YearMonth mes) {
+        return DatabaseConnection.emTransacao(conn -> {
+            try (Statement trava = conn.createStatement();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT criar_particao_movimentacoes(?)")) {
+
+                trava.execute(TRAVA);
+                stmt.setDate(1, Date.valueOf(mes.atDay(1)));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    return rs.getBoolean(1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Meses com partição própria anexada, do mais antigo para o mais recente.
+     */
+    public List<YearMonth> listarMeses() {
+        String sql = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'movimentacoes'::regclass
+              AND c.relname ~ '^movimentacoes_[0-9]{4}_[0-9]{2}$'
+            ORDER BY c.relname
+            """;
+
+        List<YearMonth> meses = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                meses.add(YearMonth.parse(rs.getString(1).substring("movimentacoes_".length()), SUFIXO));
+            }
+            return meses;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao listar partições de movimentações", e);
+        }
+    }
+
+    /**
+     * Desanexa a partição do mês e a move para o esquema de arquivo. As linhas saem
+     * das consultas na hora, sem DELETE; a tabela continua no banco para backup ou DROP.
+     */
+    public void arquivar(YearMonth mes) {
+        String nome = nome(mes);
+
+        DatabaseConnection.emTransacao(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(TRAVA);
+                stmt.execute("CREATE SCHEMA IF NOT EXISTS " + ESQUEMA_ARQUIVO);
+                stmt.execute("ALTER TABLE movimentacoes DETACH PARTITION " + nome);
+                stmt.execute("ALTER TABLE " + nome + " SET SCHEMA " + ESQUEMA_ARQUIVO);
+            }
+            VersaoDados.alterada(conn, Tabela.MOVIMENTACOES);
+            return null;
+        });
+    }
+
+    private static String nome(YearMonth mes) {
+        return "movimentacoes_" + mes.format(SUFIXO);
+    }
+}
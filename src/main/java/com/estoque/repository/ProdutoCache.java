@@ -0,0 +1,91 @@
+package com.estoque.repository;
+
+import com.estoque.config.Metricas;
+import com.estoque.model.Produto;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Produtos consultados por id recentemente, em um LRU limitado na frente de
+ * ProdutoRepository.buscarPorId.
+ *
+ * As instâncias devolvidas são compartilhadas entre requisições e não podem ser
+ * alteradas. Quem grava produtos (cadastro, estoque, preço, categoria) deve chamar
+ * invalidar ou limpar depois do commit.
+ */
+public class ProdutoCache {
+
+    private final ProdutoRepository produtoRepository;
+    private final int capacidade;
+    // Ordem de acesso: o primeiro é o menos usado recentemente
+    private final LinkedHashMap<Long, Produto> recentes;
+    // Incrementada a cada invalidação, sob a trava de recentes
+    private long geracao;
+
+    public ProdutoCache(ProdutoRepository produtoRepository, int capacidade) {
+        this.produtoRepository = produtoRepository;
+        this.capacidade = capacidade;
+        this.recentes = new LinkedHashMap<>(Math.min(capacidade, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Produto> maisAntigo) {
+                return size() > ProdutoCache.this.capacidade;
+            }
+        };
+    }
+
+    public Produto buscarPorId(Long id) {
+        long geracaoAntes;
+        synchronized (recentes) {
+            Produto produto = recentes.get(id);
+            if (produto != null) {
+                Metricas.consultaCache("produtos", true);
+                return produto;
+            }
+            geracaoAntes = geracao;
+        }
+        Metricas.consultaCache("produtos", false);
+
+        Produto lido = produtoRepository.buscarPorId(id);
+        if (lido != null) {
+            synchronized (recentes) {
+                // Uma escrita durante a leitura pode não estar refletida; não guarda
+                if (geracao == geracaoAntes) {
+                    recentes.put(id, lido);
+                }
+            }
+        }
+        return lido;
+    }
+
+    public void invalidar(Long id) {
+        synchronized (recentes) {
+            geracao++;
+            recentes.remove(id);
+        }
+    }
+
+    public void invalidar(Collection<Long> ids) {
+        synchronized (recentes) {
+            geracao++;
+            for (Long id : ids) {
+                recentes.remove(id);
+            }
+        }
+    }
+
+    // Alterações em massa (reajuste de preços, categoria renomeada ou removida)
+    public void limpar() {
+        synchronized (recentes) {
+            geracao++;
+            recentes.clear();
+        }
+    }
+
+    public int getTamanho() {
+        synchronized (recentes) {
+            return recentes.size();
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package com.estoque.repository;
 
 import com.estoque.config.DatabaseConnection;
+import com.estoque.config.VersaoDados;
+import com.estoque.config.VersaoDados.Tabela;
 import com.estoque.model.Categoria;
 import com.estoque.model.Produto;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class ProdutoRepository {
 
+    private final CategoriaCache categorias;
+
+    // As categorias vêm do cache em vez de um JOIN em cada consulta de produtos
+    public ProdutoRepository(CategoriaCache categorias) {
+        this.categorias = categorias;
+    }
+
     public Produto salvar(Produto produto) {
         String sql;
         if (produto.getId() == null) {
@@ -47,6 +61,7 @@ public class ProdutoRepository {
                     produto.setId(rs.getLong("id"));
                 }
             }
+            VersaoDados.alterada(Tabela.PRODUTOS);
             return produto;
 
         } catch (SQLException e) {
@@ -60,21 +75,148 @@ public class ProdutoRepository {
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setLong(1, id);
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) {
+                VersaoDados.alterada(Tabela.PRODUTOS);
+            }
 
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao remover produto", e);
         }
     }
 
+    /**
+     * Soma delta ao estoque em um único UPDATE condicional, sem ler o produto antes.
+     * Retorna o novo saldo, ou null se o produto não existe ou o saldo ficaria negativo.
+     */
+    public Integer ajustarEstoque(Connection conn, Long id, int delta) throws SQLException {
+        String sql = "UPDATE produtos SET quantidade_estoque = quantidade_estoque + ? " +
+                     "WHERE id = ? AND quantidade_estoque >= ? RETURNING quantidade_estoque";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, delta);
+            stmt.setLong(2, id);
+            stmt.setInt(3, Math.max(0, -delta));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                VersaoDados.alterada(conn, Tabela.PRODUTOS);
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Lê e trava (FOR UPDATE) o saldo dos produtos informados, em ordem de id
+     * para que lotes concorrentes travem as linhas sempre na mesma sequência.
+     */
+    public Map<Long, Integer> bloquearSaldos(Connection conn, Collection<Long> ids) throws SQLException {
+        String sql = "SELECT id, quantidade_estoque FROM produtos " +
+                     "WHERE id = ANY(?) ORDER BY id FOR UPDATE";
+
+        Map<Long, Integer> saldos = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    saldos.put(rs.getLong(1), rs.getInt(2));
+                }
+            }
+        }
+        return saldos;
+    }
+
+    /**
+     * Aplica a variação líquida de estoque de vários produtos com um único executeBatch.
+     * As linhas já devem estar travadas por bloquearSaldos na mesma transação.
+     */
+    public void aplicarDeltas(Connection conn, Map<Long, Integer> deltas) throws SQLException {
+        String sql = "UPDATE produtos SET quantidade_estoque = quantidade_estoque + ? WHERE id = ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<Long, Integer> e : deltas.entrySet()) {
+                if (e.getValue() == 0) {
+                    continue;
+                }
+                stmt.setInt(1, e.getValue());
+                stmt.setLong(2, e.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            VersaoDados.alterada(conn, Tabela.PRODUTOS);
+        }
+    }
+
+    public boolean existe(Connection conn, Long id) throws SQLException {
+        String sql = "SELECT 1 FROM produtos WHERE id = ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Multiplica o preço dos produtos pelo fator em um único UPDATE.
+     * Sem filtros (ids null) atinge o catálogo inteiro; uma lista de ids vazia não
+     * seleciona nenhum produto. Retorna o número de linhas alteradas.
+     */
+    public int reajustarPrecos(BigDecimal fator, Long categoriaId, List<Long> ids) {
+        if (ids != null && ids.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder(
+                "UPDATE produtos SET preco_unitario = ROUND(preco_unitario * ?, 2) WHERE TRUE");
+        if (categoriaId != null) {
+            sql.append(" AND categoria_id = ?");
+        }
+        if (ids != null) {
+            sql.append(" AND id = ANY(?)");
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            int i = 1;
+            stmt.setBigDecimal(i++, fator);
+            if (categoriaId != null) {
+                stmt.setLong(i++, categoriaId);
+            }
+            if (ids != null) {
+                stmt.setArray(i, conn.createArrayOf("bigint", ids.toArray()));
+            }
+            int alterados = stmt.executeUpdate();
+            if (alterados > 0) {
+                VersaoDados.alterada(Tabela.PRODUTOS);
+            }
+            return alterados;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao reajustar preços", e);
+        }
+    }
+
+    /**
+     * Token de versão dos dados devolvidos por buscarTodos/buscarPorId (produtos e
+     * nomes de categoria do cache). Deve ser lido antes da consulta.
+     */
+    public String versao() {
+        return "p" + VersaoDados.atual(Tabela.PRODUTOS) + ".c" + categorias.versao();
+    }
+
     public Produto buscarPorId(Long id) {
         String sql = """
-                SELECT p.*, c.nome AS categoria_nome
+                SELECT p.*
                 FROM produtos p
-                LEFT JOIN categorias c ON c.id = p.categoria_id
                 WHERE p.id = ?
                 """;
 
+        Map<Long, Categoria> dicionario = categorias.dicionario();
+        Produto produto = null;
+
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
@@ -82,24 +224,56 @@ public class ProdutoRepository {
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSet(rs);
+                    produto = mapResultSet(rs, dicionario);
                 }
-                return null;
             }
 
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar produto", e);
         }
+
+        if (produto != null) {
+            completarCategorias(List.of(produto), dicionario);
+        }
+        return produto;
+    }
+
+    public List<Produto> buscarPorIds(Collection<Long> ids) {
+        String sql = """
+                SELECT p.*
+                FROM produtos p
+                WHERE p.id = ANY(?)
+                """;
+
+        Map<Long, Categoria> dicionario = categorias.dicionario();
+        List<Produto> produtos = new ArrayList<>(ids.size());
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    produtos.add(mapResultSet(rs, dicionario));
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar produtos", e);
+        }
+
+        return completarCategorias(produtos, dicionario);
     }
 
     public List<Produto> buscarTodos() {
         String sql = """
-                SELECT p.*, c.nome AS categoria_nome
+                SELECT p.*
                 FROM produtos p
-                LEFT JOIN categorias c ON c.id = p.categoria_id
                 ORDER BY p.nome
                 """;
 
+        Map<Long, Categoria> dicionario = categorias.dicionario();
         List<Produto> produtos = new ArrayList<>();
 
         try (Connection conn = DatabaseConnection.getConnection();
@@ -107,17 +281,95 @@ public class ProdutoRepository {
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                produtos.add(mapResultSet(rs));
+                produtos.add(mapResultSet(rs, dicionario));
             }
 
-            return produtos;
-
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar produtos", e);
         }
+
+        return completarCategorias(produtos, dicionario);
+    }
+
+    // ==================== CONSULTAS DE RELATÓRIO ====================
+
+    public List<Produto> buscarAbaixoDoMinimo() {
+        // Mesmo predicado do índice parcial idx_produtos_abaixo_minimo
+        String sql = """
+                SELECT p.*
+                FROM produtos p
+                WHERE p.quantidade_estoque < p.quantidade_minima
+                ORDER BY p.nome
+                """;
+
+        Map<Long, Categoria> dicionario = categorias.dicionario();
+        List<Produto> produtos = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                produtos.add(mapResultSet(rs, dicionario));
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar produtos abaixo do mínimo", e);
+        }
+
+        return completarCategorias(produtos, dicionario);
+    }
+
+    public List<TotalCategoria> totaisPorCategoria() {
+        String sql = """
+                SELECT categoria_id,
+                       COUNT(*) AS quantidade,
+                       COALESCE(SUM(preco_unitario * quantidade_estoque), 0) AS valor
+                FROM produtos
+                GROUP BY categoria_id
+                """;
+
+        // Agrupa de novo pelo nome, que vem do cache de categorias
+        Map<String, TotalCategoria> porNome = new TreeMap<>();
+        Map<Long, Categoria> dicionario = categorias.dicionario();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                long categoriaId = rs.getLong("categoria_id");
+                Categoria c = rs.wasNull() ? null : dicionario.get(categoriaId);
+                String nome = c != null ? c.getNome() : "Sem categoria";
+
+                TotalCategoria total = new TotalCategoria(nome, rs.getLong("quantidade"), rs.getBigDecimal("valor"));
+                porNome.merge(nome, total, (a, b) ->
+                        new TotalCategoria(nome, a.quantidade() + b.quantidade(), a.valor().add(b.valor())));
+            }
+            return new ArrayList<>(porNome.values());
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao contar produtos por categoria", e);
+        }
     }
 
-    private Produto mapResultSet(ResultSet rs) throws SQLException {
+    public BigDecimal calcularValorTotalEstoque() {
+        String sql = "SELECT COALESCE(SUM(preco_unitario * quantidade_estoque), 0) FROM produtos";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            rs.next();
+            return rs.getBigDecimal(1);
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao calcular valor total do estoque", e);
+        }
+    }
+
+    // Visível no pacote para o benchmark de mapeamento (benchmarks/)
+    Produto mapResultSet(ResultSet rs, Map<Long, Categoria> dicionario) throws SQLException {
         Produto p = new Produto();
         p.setId(rs.getLong("id"));
         p.setNome(rs.getString("nome"));
@@ -127,15 +379,34 @@ public class ProdutoRepository {
         p.setQuantidadeMinima(rs.getInt("quantidade_minima"));
         p.setQuantidadeMaxima(rs.getInt("quantidade_maxima"));
 
-        Long categoriaId = rs.getLong("categoria_id");
+        long categoriaId = rs.getLong("categoria_id");
         if (!rs.wasNull()) {
-            Categoria c = new Categoria();
-            c.setId(categoriaId);
-            // vem do alias no SELECT
-            c.setNome(rs.getString("categoria_nome"));
+            // Instância compartilhada do cache; categoria nova fica só com o id até completarCategorias
+            Categoria c = dicionario.get(categoriaId);
+            if (c == null) {
+                c = new Categoria();
+                c.setId(categoriaId);
+            }
             p.setCategoria(c);
         }
 
         return p;
     }
+
+    // Lê as categorias que não estavam no dicionário (criadas por fora da API). Chamado
+    // depois de devolver a conexão, para não segurar duas do pool ao mesmo tempo.
+    private List<Produto> completarCategorias(List<Produto> produtos, Map<Long, Categoria> dicionario) {
+        Map<Long, Categoria> lidas = null;
+        for (Produto p : produtos) {
+            Categoria c = p.getCategoria();
+            if (c == null || dicionario.get(c.getId()) == c) {
+                continue;
+            }
+            if (lidas == null) {
+                lidas = new HashMap<>();
+            }
+            p.setCategoria(lidas.computeIfAbsent(c.getId(), categorias::buscarPorId));
+        }
+        return produtos;
+    }
 }
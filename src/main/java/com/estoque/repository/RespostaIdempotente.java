@@ -0,0 +1,8 @@
+package com.estoque.repository;
+
+/**
+ * Resposta enviada para uma Idempotency-Key. impressao identifica o pedido original
+ * (a mesma chave com outro conteúdo é recusada em vez de repetir esta resposta).
+ */
+public record RespostaIdempotente(int status, String impressao, byte[] corpo, long criadaEmMillis) {
+}
@@ -0,0 +1,9 @@
+package com.estoque.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Quantidade de produtos e valor em estoque (preço x quantidade) de uma categoria.
+ */
+public record TotalCategoria(String categoria, long quantidade, BigDecimal valor) {
+}
@@ -0,0 +1,10 @@
+package com.estoque.repository;
+
+import com.estoque.model.Produto;
+
+/**
+ * Produto (id e nome) e a quantidade total movimentada por ele (SUM de INTEGER
+ * no PostgreSQL é BIGINT).
+ */
+public record TotalPorProduto(Produto produto, long total) {
+}
@@ -0,0 +1,120 @@
+package com.estoque.server;
+
+import com.estoque.config.Env;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negociação de Accept-Encoding (gzip ou deflate) e compressão dos corpos JSON.
+ *
+ * Corpos menores que HTTP_COMPRESSAO_MIN_BYTES saem sem compressão: o ganho
+ * não paga o custo e o cabeçalho do gzip.
+ */
+final class Compressao {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    static final boolean HABILITADA = Env.getBoolean("HTTP_COMPRESSAO", true);
+    static final int TAMANHO_MINIMO = Env.getInt("HTTP_COMPRESSAO_MIN_BYTES", 1024);
+
+    private Compressao() {}
+
+    /**
+     * Codificação a usar para esta requisição, ou null para enviar sem compressão.
+     * Prefere gzip; respeita q=0 e aceita "*".
+     */
+    static String negociar(HttpExchange exchange) {
+        if (!HABILITADA) {
+            return null;
+        }
+        String aceitas = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (aceitas == null || aceitas.isEmpty()) {
+            return null;
+        }
+
+        double gzip = -1, deflate = -1, curinga = -1;
+        for (String parte : aceitas.split(",")) {
+            String[] campos = parte.split(";");
+            String nome = campos[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < campos.length; i++) {
+                String parametro = campos[i].trim();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(parametro.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (nome) {
+                case "gzip", "x-gzip" -> gzip = q;
+                case "deflate" -> deflate = q;
+                case "*" -> curinga = q;
+                default -> { }
+            }
+        }
+        if (gzip < 0) {
+            gzip = curinga;
+        }
+        if (deflate < 0) {
+            deflate = curinga;
+        }
+
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    /**
+     * Envolve o corpo da resposta em um compressor. Usa o nível mais rápido,
+     * porque aqui a compressão acontece a cada requisição.
+     */
+    static OutputStream envolver(OutputStream out, String codificacao) throws IOException {
+        return abrir(out, codificacao, Deflater.BEST_SPEED);
+    }
+
+    // Compressão feita uma vez e reaproveitada: vale gastar mais CPU
+    static byte[] comprimir(byte[] dados, String codificacao) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, dados.length / 8));
+        try (OutputStream out = abrir(bytes, codificacao, Deflater.DEFAULT_COMPRESSION)) {
+            out.write(dados);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static OutputStream abrir(OutputStream out, String codificacao, int nivel) throws IOException {
+        if (GZIP.equals(codificacao)) {
+            return new GZIPOutputStream(out, 8192) {
+                {
+                    def.setLevel(nivel);
+                }
+            };
+        }
+        if (DEFLATE.equals(codificacao)) {
+            // "deflate" no HTTP é o formato zlib, que é o padrão do Deflater
+            return new DeflaterOutputStream(out, new Deflater(nivel), 8192) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+        throw new IllegalArgumentException("Codificação não suportada: " + codificacao);
+    }
+}
@@ -0,0 +1,81 @@
+package com.estoque.server;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escritor de CSV em streaming no formato da RFC 4180: campos separados por ',',
+ * linhas terminadas em CRLF e aspas só nos campos que têm vírgula, aspas ou
+ * quebra de linha.
+ */
+public final class CsvWriter implements Closeable {
+
+    private final Writer out;
+    private boolean inicioDaLinha = true;
+
+    public CsvWriter(OutputStream out) {
+        this(out, 8192);
+    }
+
+    public CsvWriter(OutputStream out, int tamanhoBuffer) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), tamanhoBuffer);
+    }
+
+    public CsvWriter value(String valor) throws IOException {
+        separar();
+        if (valor == null) {
+            return this;
+        }
+        if (precisaAspas(valor)) {
+            out.write('"');
+            out.write(valor.replace("\"", "\"\""));
+            out.write('"');
+        } else {
+            out.write(valor);
+        }
+        return this;
+    }
+
+    public CsvWriter value(long valor) throws IOException {
+        separar();
+        out.write(Long.toString(valor));
+        return this;
+    }
+
+    public CsvWriter endRow() throws IOException {
+        out.write("\r\n");
+        inicioDaLinha = true;
+        return this;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void separar() throws IOException {
+        if (!inicioDaLinha) {
+            out.write(',');
+        }
+        inicioDaLinha = false;
+    }
+
+    private static boolean precisaAspas(String valor) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,29 +1,54 @@
 package com.estoque.server;
 
+import com.estoque.config.Env;
+import com.estoque.config.Metricas;
+import com.estoque.config.VersaoDados;
 import com.estoque.model.Categoria;
+import com.estoque.model.ComandoMovimentacao;
 import com.estoque.model.Movimentacao;
 import com.estoque.model.Produto;
 import com.estoque.model.TipoMovimentacao;
+import com.estoque.repository.CursorMovimentacao;
+import com.estoque.repository.FiltroMovimentacao;
+import com.estoque.repository.TotalCategoria;
+import com.estoque.service.CatalogoProdutos;
 import com.estoque.service.CategoriaService;
 import com.estoque.service.MovimentacaoService;
+import com.estoque.service.Pagina;
 import com.estoque.service.ProdutoService;
+import com.estoque.service.RecursoNaoEncontradoException;
+import com.estoque.service.ResultadoIdempotente;
+import com.estoque.service.ResultadoLote;
 import com.estoque.service.RelatorioService;
 import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class HttpApiServer {
 
@@ -32,6 +57,7 @@ public class HttpApiServer {
     private final MovimentacaoService movimentacaoService;
     private final RelatorioService relatorioService;
     private final int port;
+    private HttpServer server;
 
     public HttpApiServer(ProdutoService produtoService,
                          CategoriaService categoriaService,
@@ -46,77 +72,270 @@ public class HttpApiServer {
     }
 
     public void start() throws IOException {
-        HttpServer server = HttpServer.create(new InetSocketAddress("0.0.0.0", port), 0);
+        // O HttpServer do JDK não liga TCP_NODELAY por padrão: com keep-alive, o corpo escrito
+        // depois dos cabeçalhos espera o ACK atrasado do cliente (~40 ms por resposta).
+        // Lido uma única vez, na criação do primeiro servidor.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress("0.0.0.0", port), 0);
+
+        // Modo do executor: "virtual" (uma virtual thread por requisição) ou "platform"
+        String modo = Env.get("HTTP_EXECUTOR", "virtual");
+        int threads = Env.getInt("HTTP_THREADS", Runtime.getRuntime().availableProcessors() * 4);
+        int maxConcorrentes = Env.getInt("HTTP_MAX_CONCURRENT", 256);
+        int retryAfter = Env.getInt("HTTP_RETRY_AFTER_S", 1);
+
+        Executor executor;
+        if ("platform".equalsIgnoreCase(modo)) {
+            executor = criarPoolPlataforma(threads, Env.getInt("HTTP_FILA", threads));
+            maxConcorrentes = Math.min(maxConcorrentes, threads);
+        } else if ("virtual".equalsIgnoreCase(modo)) {
+            // O HttpServer do JDK escreve no socket dentro de um synchronized: com um cliente
+            // lento a virtual thread fica presa à carrier. Com poucas CPUs isso pararia o
+            // servidor inteiro. O número de carriers só é lido na criação da primeira virtual
+            // thread, então vem da linha de comando (-Djdk.virtualThreadScheduler.parallelism).
+            if (System.getProperty("jdk.virtualThreadScheduler.parallelism") == null
+                    && Runtime.getRuntime().availableProcessors() < 16) {
+                System.err.println("HTTP_EXECUTOR=virtual com " + Runtime.getRuntime().availableProcessors()
+                        + " carriers: clientes lentos podem travar o servidor;"
+                        + " inicie a JVM com -Djdk.virtualThreadScheduler.parallelism=16");
+            }
+            executor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("http-", 0).factory());
+        } else {
+            throw new IllegalStateException("HTTP_EXECUTOR inválido: " + modo + " (use virtual ou platform)");
+        }
+
+        LimitadorConcorrencia limitador = new LimitadorConcorrencia(maxConcorrentes, retryAfter);
+        Metricas.registrarMedidor("estoque_http_requests_in_flight", "Requisições em processamento", limitador::getEmUso);
+
+        Roteador roteador = new Roteador();
+        new ProdutosHandler(produtoService).registrar(roteador);
+        new CategoriasHandler(categoriaService).registrar(roteador);
+        new MovimentacoesHandler(movimentacaoService).registrar(roteador);
+        roteador.adicionar("POST", "/api/admin/catalogo/refresh", new AdminCatalogoHandler(produtoService))
+                .adicionar("GET", "/api/relatorios/precos", new RelatoriosPrecosHandler(relatorioService))
+                .adicionar("GET", "/api/relatorios/balanco", new RelatoriosBalancoHandler(relatorioService))
+                .adicionar("GET", "/api/relatorios/abaixo-minimo", new RelatoriosAbaixoMinimoHandler(relatorioService))
+                .adicionar("GET", "/api/relatorios/produtos-por-categoria", new RelatoriosProdutosPorCategoriaHandler(relatorioService))
+                .adicionar("GET", "/api/relatorios/movimentacoes-top", new RelatoriosMovimentacoesTopHandler(relatorioService));
+        registrar(server, limitador, "/api", roteador);
+
+        // Fora do limitador: a coleta precisa responder justamente quando o servidor está saturado
+        server.createContext("/api/metrics", new Roteador().adicionar("GET", "/api/metrics", new MetricasHandler()));
+
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("HTTP API ouvindo em http://0.0.0.0:" + port
+                + " (executor=" + modo.toLowerCase() + ", max concorrentes=" + maxConcorrentes + ")");
+    }
 
-        server.createContext("/api/produtos", new ProdutosHandler(produtoService));
-        server.createContext("/api/categorias", new CategoriasHandler(categoriaService));
-        server.createContext("/api/movimentacoes", new MovimentacoesHandler(movimentacaoService));
-        server.createContext("/api/relatorios/precos", new RelatoriosPrecosHandler(relatorioService));
-        server.createContext("/api/relatorios/balanco", new RelatoriosBalancoHandler(relatorioService));
-        server.createContext("/api/relatorios/abaixo-minimo", new RelatoriosAbaixoMinimoHandler(relatorioService));
-        server.createContext("/api/relatorios/produtos-por-categoria", new RelatoriosProdutosPorCategoriaHandler(relatorioService));
-        server.createContext("/api/relatorios/movimentacoes-top", new RelatoriosMovimentacoesTopHandler(relatorioService));
+    /**
+     * Para de aceitar conexões e espera até segundos pelas trocas em andamento.
+     */
+    public void stop(int segundos) {
+        if (server != null) {
+            server.stop(segundos);
+            server = null;
+        }
+    }
 
+    private static void registrar(HttpServer server, LimitadorConcorrencia limitador,
+                                  String caminho, Roteador roteador) {
+        HttpContext context = server.createContext(caminho, roteador);
+        if (Metricas.HABILITADAS) {
+            context.getFilters().add(new MedidorRequisicoes(roteador));
+        }
+        context.getFilters().add(limitador);
+    }
 
-        server.setExecutor(null);
-        server.start();
-        System.out.println("HTTP API ouvindo em http://0.0.0.0:" + port);
+    // A fila curta cobre o intervalo entre o limitador liberar a vaga e a thread voltar a
+    // pegar tarefas. Com ela cheia a requisição vai para uma thread à parte que só responde
+    // 503: nunca roda na thread do dispatcher, que atende todas as conexões. Se até a fila
+    // dessa thread encher, a recusa lança RejectedExecutionException e o dispatcher
+    // simplesmente fecha a conexão.
+    private static ExecutorService criarPoolPlataforma(int threads, int fila) {
+        AtomicInteger contador = new AtomicInteger();
+        ExecutorService recusas = new ThreadPoolExecutor(
+                1, 1,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, fila)),
+                r -> {
+                    Thread t = new Thread(r, "http-recusa");
+                    t.setDaemon(true);
+                    return t;
+                });
+        return new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, fila)),
+                r -> {
+                    Thread t = new Thread(r, "http-" + contador.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (tarefa, pool) -> recusas.execute(LimitadorConcorrencia.recusando(tarefa))
+        );
     }
 
     // ==================== MÉTODOS AUXILIARES COMPARTILHADOS ====================
-    static String readBody(HttpExchange exchange) throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
-            return reader.lines().collect(Collectors.joining());
+    // Lê o corpo da requisição em uma única passada, sem materializar a String inteira
+    static <T> T lerJson(HttpExchange exchange, JsonReader.ElementReader<T> leitor) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonReader r = new JsonReader(in);
+            T valor = leitor.read(r);
+            r.endDocument();
+            return valor;
         }
     }
 
-    static String extractValue(String json, String key) {
-        String pattern = "\"" + key + "\":";
-        int start = json.indexOf(pattern);
-        if (start == -1) return "";
+    static Map<String, String> lerParametros(HttpExchange exchange) {
+        Map<String, String> parametros = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parametros;
+        }
+        for (String par : query.split("&")) {
+            if (par.isEmpty()) {
+                continue;
+            }
+            int igual = par.indexOf('=');
+            String nome = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(nome, StandardCharsets.UTF_8),
+                           URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
 
-        start += pattern.length();
-        while (start < json.length() && json.charAt(start) == ' ') start++;
-        if (start >= json.length()) return "";
+    static Long parametroLong(Map<String, String> parametros, String nome) {
+        String valor = parametros.get(nome);
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new RequisicaoInvalidaException("Parâmetro " + nome + " inválido: " + valor);
+        }
+    }
 
-        char firstChar = json.charAt(start);
+    static LocalDate parametroData(Map<String, String> parametros, String nome) {
+        String valor = parametros.get(nome);
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(valor.trim());
+        } catch (DateTimeParseException e) {
+            throw new RequisicaoInvalidaException("Parâmetro " + nome + " inválido: " + valor + " (use AAAA-MM-DD)");
+        }
+    }
 
-        if (firstChar == '"') {
-            start++;
-            int end = json.indexOf('"', start);
-            return end != -1 ? json.substring(start, end) : "";
-        } else {
-            int end = start;
-            while (end < json.length() &&
-                    json.charAt(end) != ',' &&
-                    json.charAt(end) != '}' &&
-                    json.charAt(end) != ' ') {
-                end++;
-            }
-            return json.substring(start, end).trim();
+    static void exigir(Object valor, String campo) {
+        if (valor == null || (valor instanceof String texto && texto.isBlank())) {
+            throw new JsonParseException("Campo obrigatório ausente: " + campo);
         }
     }
 
-    static String escape(String s) {
-        if (s == null) return "";
-        return s.replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r");
+    @FunctionalInterface
+    interface CorpoJson {
+        void escrever(JsonWriter w) throws IOException;
     }
 
-    static void sendJsonResponse(HttpExchange exchange, int statusCode, String json) throws IOException {
-        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    // Serializa direto no corpo da resposta (UTF-8, chunked quando não cabe no buffer,
+    // comprimido em streaming se o cliente aceitar gzip/deflate)
+    static void sendJson(HttpExchange exchange, int statusCode, CorpoJson corpo) throws IOException {
         exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
-        exchange.sendResponseHeaders(statusCode, bytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(bytes);
+        if (Compressao.HABILITADA) {
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
         }
+        SaidaResposta saida = new SaidaResposta(exchange, statusCode, Compressao.negociar(exchange));
+        JsonWriter w = new JsonWriter(saida);
+        try {
+            corpo.escrever(w);
+        } catch (IOException | RuntimeException e) {
+            if (!saida.iniciada()) {
+                // Nada foi enviado: o roteador ainda responde com o status do erro
+                throw e;
+            }
+            // Sem fechar a saída: o chunk final faria o JSON truncado parecer completo
+            throw new RespostaInterrompidaException(e);
+        }
+        w.close();
+    }
+
+    // Corpo JSON já serializado (codificarJson), comprimido se o cliente aceitar
+    static void sendJson(HttpExchange exchange, int statusCode, byte[] json) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        if (Compressao.HABILITADA) {
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        }
+        try (OutputStream os = new SaidaResposta(exchange, statusCode, Compressao.negociar(exchange))) {
+            os.write(json);
+        }
+    }
+
+    // Serializa o corpo inteiro em memória, para respostas que serão reaproveitadas
+    static byte[] codificarJson(CorpoJson corpo) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        JsonWriter w = new JsonWriter(bytes);
+        // Fecha só no sucesso; se escrever falhar, a exceção sobe antes de qualquer header
+        corpo.escrever(w);
+        w.close();
+        return bytes.toByteArray();
+    }
+
+    // ISO (AAAA-MM-DD) ou null; JsonWriter escreve null e CsvWriter deixa a coluna vazia
+    static String textoData(LocalDate data) {
+        return data != null ? data.toString() : null;
+    }
+
+    /**
+     * Define o ETag da resposta a partir do token de versão e, se o cliente já tem
+     * essa versão (If-None-Match), responde 304 sem corpo. O token deve ser obtido
+     * antes de consultar os dados.
+     */
+    static boolean naoModificado(HttpExchange exchange, String versao) throws IOException {
+        // Cada codificação é uma representação diferente e precisa de ETag próprio
+        String codificacao = Compressao.negociar(exchange);
+        String etag = VersaoDados.etag(codificacao != null ? versao + "-" + codificacao : versao);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Cache-Control", "no-cache");
+        if (Compressao.HABILITADA) {
+            headers.set("Vary", "Accept-Encoding");
+        }
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null || !contemEtag(ifNoneMatch, etag)) {
+            return false;
+        }
+        exchange.sendResponseHeaders(304, -1);
+        exchange.getResponseBody().close();
+        return true;
+    }
+
+    // If-None-Match aceita lista separada por vírgula, "*" e comparação fraca (W/)
+    private static boolean contemEtag(String ifNoneMatch, String etag) {
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     static void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
         byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
         try {
+            exchange.getResponseHeaders().remove("ETag");
+            exchange.getResponseHeaders().remove("Vary");
             exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
             exchange.sendResponseHeaders(statusCode, bytes.length);
             try (OutputStream os = exchange.getResponseBody()) {
@@ -129,330 +348,589 @@ public class HttpApiServer {
     static void addCorsHeaders(Headers headers) {
         headers.add("Access-Control-Allow-Origin", "*");
         headers.add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        headers.add("Access-Control-Allow-Headers", "Content-Type");
+        headers.add("Access-Control-Allow-Headers", "Content-Type, If-None-Match, Idempotency-Key");
+        headers.add("Access-Control-Expose-Headers", "X-Next-Cursor, ETag, Idempotent-Replayed");
     }
 
     // ==================== HANDLER DE PRODUTOS ====================
-    static class ProdutosHandler implements HttpHandler {
+    static class ProdutosHandler {
         private final ProdutoService produtoService;
 
+        // Listagem já serializada (e comprimida) para a versão atual do catálogo
+        private final RespostaVersionada listagem = new RespostaVersionada();
+
         public ProdutosHandler(ProdutoService produtoService) {
             this.produtoService = produtoService;
         }
 
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            try {
-                String method = exchange.getRequestMethod().toUpperCase();
-                String path = exchange.getRequestURI().getPath();
+        void registrar(Roteador roteador) {
+            roteador.adicionar("GET", "/api/produtos", (exchange, p) -> handleGet(exchange))
+                    .adicionar("GET", "/api/produtos/{id}", (exchange, p) -> handleGetPorId(exchange, p.id("id")))
+                    .adicionar("POST", "/api/produtos", (exchange, p) -> handlePost(exchange))
+                    .adicionar("POST", "/api/produtos/reajuste", (exchange, p) -> handleReajuste(exchange))
+                    .adicionar("PUT", "/api/produtos/{id}", (exchange, p) -> handlePut(exchange, p.id("id")))
+                    .adicionar("DELETE", "/api/produtos/{id}", (exchange, p) -> handleDelete(exchange, p.id("id")));
+        }
 
-                addCorsHeaders(exchange.getResponseHeaders());
+        private record PedidoReajuste(BigDecimal percentual, Long categoriaId, List<Long> ids) {}
 
-                if ("OPTIONS".equals(method)) {
-                    exchange.sendResponseHeaders(204, -1);
-                    return;
-                }
+        private void handleReajuste(HttpExchange exchange) throws IOException {
+            PedidoReajuste pedido = lerJson(exchange, ProdutosHandler::lerReajuste);
+
+            long inicio = System.nanoTime();
+            int afetados = produtoService.reajustarPrecos(pedido.percentual(), pedido.categoriaId(), pedido.ids());
+            long tempoMs = (System.nanoTime() - inicio) / 1_000_000;
+
+            sendJson(exchange, 200, w -> w.beginObject()
+                    .name("linhasAfetadas").value(afetados)
+                    .name("tempoMs").value(tempoMs)
+                    .endObject());
+        }
 
-                if ("GET".equals(method)) {
-                    handleGet(exchange);
-                } else if ("POST".equals(method)) {
-                    handlePost(exchange);
-                } else if ("PUT".equals(method)) {
-                    handlePut(exchange, path);
-                } else if ("DELETE".equals(method)) {
-                    handleDelete(exchange, path);
-                } else {
-                    exchange.sendResponseHeaders(405, -1);
+        private static PedidoReajuste lerReajuste(JsonReader r) throws IOException {
+            BigDecimal percentual = null;
+            Long categoriaId = null;
+            List<Long> ids = null;
+
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    // Até 6 casas e |percentual| < 100, antes de qualquer conta com o valor
+                    case "percentual" -> percentual = r.nextBigDecimal(
+                            ProdutoService.MAX_ESCALA_PERCENTUAL, ProdutoService.MAX_DIGITOS_PERCENTUAL);
+                    case "categoriaId" -> categoriaId = r.nextLongOrNull();
+                    case "ids" -> ids = r.nextList(JsonReader::nextLong);
+                    default -> r.skipValue();
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendError(exchange, 500, "Erro interno no servidor");
             }
+            r.endObject();
+
+            exigir(percentual, "percentual");
+            if (BigDecimal.ONE.add(percentual).signum() <= 0) {
+                throw new JsonParseException("percentual deve ser maior que -1 (-100%)");
+            }
+            // Lista vazia seria "nenhum produto", não "todos": para o catálogo inteiro omita ids
+            if (ids != null && ids.isEmpty()) {
+                throw new JsonParseException("ids não pode ser vazio (omita o campo para reajustar todos)");
+            }
+            return new PedidoReajuste(percentual, categoriaId, ids);
         }
 
         private void handleGet(HttpExchange exchange) throws IOException {
-            List<Produto> produtos = produtoService.listarProdutos();
-            String json = toJsonArray(produtos);
-            sendJsonResponse(exchange, 200, json);
+            String versao = produtoService.versaoCatalogo();
+            if (naoModificado(exchange, versao) || listagem.reaproveitar(exchange, versao)) {
+                return;
+            }
+
+            List<Produto> produtos = produtoService.listarCatalogo().produtos();
+            listagem.enviar(exchange, versao, w -> w.array(produtos, ProdutosHandler::escrever));
+        }
+
+        private void handleGetPorId(HttpExchange exchange, long id) throws IOException {
+            Produto produto = produtoService.buscarPorId(id);
+            if (produto == null) {
+                throw new RecursoNaoEncontradoException("Produto não encontrado: " + id);
+            }
+            sendJson(exchange, 200, w -> escrever(w, produto));
         }
 
         private void handlePost(HttpExchange exchange) throws IOException {
-            String body = readBody(exchange);
-            Produto produto = parseProduto(body);
+            Produto produto = lerJson(exchange, ProdutosHandler::lerProduto);
             Produto criado = produtoService.criarProduto(produto);
-            String json = toJson(criado);
-            sendJsonResponse(exchange, 201, json);
+            sendJson(exchange, 201, w -> escrever(w, criado));
         }
 
-        private void handlePut(HttpExchange exchange, String path) throws IOException {
-            String[] parts = path.split("/");
-            if (parts.length < 4) {
-                sendError(exchange, 400, "ID não fornecido");
-                return;
-            }
-
-            Long id = Long.parseLong(parts[3]);
-            String body = readBody(exchange);
-            Produto produto = parseProduto(body);
+        private void handlePut(HttpExchange exchange, long id) throws IOException {
+            Produto produto = lerJson(exchange, ProdutosHandler::lerProduto);
             produto.setId(id);
 
             Produto atualizado = produtoService.atualizarProduto(produto);
-            String json = toJson(atualizado);
-            sendJsonResponse(exchange, 200, json);
+            sendJson(exchange, 200, w -> escrever(w, atualizado));
         }
 
-        private void handleDelete(HttpExchange exchange, String path) throws IOException {
-            String[] parts = path.split("/");
-            if (parts.length < 4) {
-                sendError(exchange, 400, "ID não fornecido");
-                return;
-            }
-
-            Long id = Long.parseLong(parts[3]);
+        private void handleDelete(HttpExchange exchange, long id) throws IOException {
             produtoService.removerProduto(id);
             exchange.sendResponseHeaders(204, -1);
         }
 
-        private Produto parseProduto(String json) {
+        static Produto lerProduto(JsonReader r) throws IOException {
             Produto p = new Produto();
-            p.setNome(extractValue(json, "nome"));
-            p.setPrecoUnitario(new BigDecimal(extractValue(json, "precoUnitario")));
-            p.setUnidade(extractValue(json, "unidade"));
-            p.setQuantidadeEstoque(Integer.parseInt(extractValue(json, "quantidadeEstoque")));
-            p.setQuantidadeMinima(Integer.parseInt(extractValue(json, "quantidadeMinima")));
-            p.setQuantidadeMaxima(Integer.parseInt(extractValue(json, "quantidadeMaxima")));
-
-            // novo: categoriaId vindo do front
-            String categoriaIdStr = extractValue(json, "categoriaId");
-            if (!categoriaIdStr.isEmpty()) {
-                Categoria c = new Categoria();
-                c.setId(Long.parseLong(categoriaIdStr));
-                p.setCategoria(c);
-        }
-
-        return p;
-        }
-
-
-        private String toJsonArray(List<Produto> produtos) {
-            return produtos.stream()
-                    .map(this::toJson)
-                    .collect(Collectors.joining(",", "[", "]"));
-        }
-
-        private String toJson(Produto p) {
-        Long categoriaId = p.getCategoria() != null ? p.getCategoria().getId() : null;
-        String categoriaNome = (p.getCategoria() != null && p.getCategoria().getNome() != null)
-                ? p.getCategoria().getNome() : "";
-
-        return String.format(
-            "{\"id\":%d,\"nome\":\"%s\",\"precoUnitario\":%s,\"unidade\":\"%s\"," +
-                "\"quantidadeEstoque\":%d,\"quantidadeMinima\":%d,\"quantidadeMaxima\":%d," +
-                "\"categoriaId\":%s,\"categoriaNome\":\"%s\"}",
-            p.getId(),
-            escape(p.getNome()),
-            p.getPrecoUnitario(),
-            escape(p.getUnidade()),
-            p.getQuantidadeEstoque(),
-            p.getQuantidadeMinima(),
-            p.getQuantidadeMaxima(),
-            categoriaId != null ? categoriaId.toString() : "null",
-            escape(categoriaNome)
-        );
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "nome" -> p.setNome(r.nextString());
+                    // DECIMAL(10, 2): o banco arredonda as casas, mas não aceita mais de 8 dígitos inteiros
+                    case "precoUnitario" -> p.setPrecoUnitario(r.nextBigDecimal(10, 8));
+                    case "unidade" -> p.setUnidade(r.nextString());
+                    case "quantidadeEstoque" -> p.setQuantidadeEstoque(r.nextInt());
+                    case "quantidadeMinima" -> p.setQuantidadeMinima(r.nextInt());
+                    case "quantidadeMaxima" -> p.setQuantidadeMaxima(r.nextInt());
+                    case "categoriaId" -> {
+                        Long categoriaId = r.nextLongOrNull();
+                        if (categoriaId != null) {
+                            Categoria c = new Categoria();
+                            c.setId(categoriaId);
+                            p.setCategoria(c);
+                        }
+                    }
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
+
+            exigir(p.getNome(), "nome");
+            exigir(p.getPrecoUnitario(), "precoUnitario");
+            exigir(p.getUnidade(), "unidade");
+            return p;
+        }
+
+        static void escrever(JsonWriter w, Produto p) throws IOException {
+            Categoria c = p.getCategoria();
+            w.beginObject()
+                    .name("id").value(p.getId())
+                    .name("nome").value(p.getNome())
+                    .name("precoUnitario").value(p.getPrecoUnitario())
+                    .name("unidade").value(p.getUnidade())
+                    .name("quantidadeEstoque").value(p.getQuantidadeEstoque())
+                    .name("quantidadeMinima").value(p.getQuantidadeMinima())
+                    .name("quantidadeMaxima").value(p.getQuantidadeMaxima())
+                    .name("categoriaId").value(c != null ? c.getId() : null)
+                    .name("categoriaNome").value(c != null && c.getNome() != null ? c.getNome() : "")
+                    .endObject();
         }
 
     }
 
-    // ==================== HANDLER DE CATEGORIAS ====================
-    static class CategoriasHandler implements HttpHandler {
-        private final CategoriaService categoriaService;
+    // ==================== HANDLER DE ADMINISTRAÇÃO ====================
+    static class AdminCatalogoHandler implements HttpHandler {
+        private final ProdutoService produtoService;
 
-        public CategoriasHandler(CategoriaService categoriaService) {
-            this.categoriaService = categoriaService;
+        public AdminCatalogoHandler(ProdutoService produtoService) {
+            this.produtoService = produtoService;
         }
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            try {
-                String method = exchange.getRequestMethod().toUpperCase();
-                String path = exchange.getRequestURI().getPath();
+            long inicio = System.nanoTime();
+            CatalogoProdutos.Snapshot snapshot = produtoService.recarregarCatalogo();
+            if (snapshot == null) {
+                sendError(exchange, 409, "Catálogo em memória desligado (CATALOGO_MEMORIA=false)");
+                return;
+            }
+            long tempoMs = (System.nanoTime() - inicio) / 1_000_000;
 
-                addCorsHeaders(exchange.getResponseHeaders());
+            sendJson(exchange, 200, w -> w.beginObject()
+                    .name("sequencia").value(snapshot.sequencia())
+                    .name("produtos").value(snapshot.produtos().size())
+                    .name("tempoMs").value(tempoMs)
+                    .endObject());
+        }
+    }
 
-                if ("OPTIONS".equals(method)) {
-                    exchange.sendResponseHeaders(204, -1);
-                    return;
-                }
+    // ==================== HANDLER DE MÉTRICAS ====================
+    static class MetricasHandler implements HttpHandler {
 
-                if ("GET".equals(method)) {
-                    handleGet(exchange);
-                } else if ("POST".equals(method)) {
-                    handlePost(exchange);
-                } else if ("PUT".equals(method)) {
-                    handlePut(exchange, path);
-                } else if ("DELETE".equals(method)) {
-                    handleDelete(exchange, path);
-                } else {
-                    exchange.sendResponseHeaders(405, -1);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendError(exchange, 500, "Erro interno no servidor");
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!Metricas.HABILITADAS) {
+                sendError(exchange, 404, "Métricas desligadas (METRICAS=false)");
+                return;
+            }
+
+            byte[] corpo = Metricas.exportar().getBytes(StandardCharsets.UTF_8);
+            String codificacao = Compressao.negociar(exchange);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            if (Compressao.HABILITADA) {
+                exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            }
+            try (OutputStream os = new SaidaResposta(exchange, 200, codificacao)) {
+                os.write(corpo);
             }
         }
+    }
+
+    // ==================== HANDLER DE CATEGORIAS ====================
+    static class CategoriasHandler {
+        private final CategoriaService categoriaService;
+        private final RespostaVersionada listagem = new RespostaVersionada();
+
+        public CategoriasHandler(CategoriaService categoriaService) {
+            this.categoriaService = categoriaService;
+        }
+
+        void registrar(Roteador roteador) {
+            roteador.adicionar("GET", "/api/categorias", (exchange, p) -> handleGet(exchange))
+                    .adicionar("GET", "/api/categorias/{id}", (exchange, p) -> handleGetPorId(exchange, p.id("id")))
+                    .adicionar("POST", "/api/categorias", (exchange, p) -> handlePost(exchange))
+                    .adicionar("PUT", "/api/categorias/{id}", (exchange, p) -> handlePut(exchange, p.id("id")))
+                    .adicionar("DELETE", "/api/categorias/{id}", (exchange, p) -> handleDelete(exchange, p.id("id")));
+        }
 
         private void handleGet(HttpExchange exchange) throws IOException {
+            String versao = categoriaService.versao();
+            if (naoModificado(exchange, versao) || listagem.reaproveitar(exchange, versao)) {
+                return;
+            }
+
             List<Categoria> categorias = categoriaService.listarCategorias();
-            String json = toJsonArray(categorias);
-            sendJsonResponse(exchange, 200, json);
+            listagem.enviar(exchange, versao, w -> w.array(categorias, CategoriasHandler::escrever));
+        }
+
+        private void handleGetPorId(HttpExchange exchange, long id) throws IOException {
+            Categoria categoria = categoriaService.buscarPorId(id);
+            if (categoria == null) {
+                throw new RecursoNaoEncontradoException("Categoria não encontrada: " + id);
+            }
+            sendJson(exchange, 200, w -> escrever(w, categoria));
         }
 
         private void handlePost(HttpExchange exchange) throws IOException {
-            String body = readBody(exchange);
-            Categoria categoria = parseCategoria(body);
+            Categoria categoria = lerJson(exchange, CategoriasHandler::lerCategoria);
             Categoria criada = categoriaService.criarCategoria(categoria);
-            String json = toJson(criada);
-            sendJsonResponse(exchange, 201, json);
+            sendJson(exchange, 201, w -> escrever(w, criada));
         }
 
-        private void handlePut(HttpExchange exchange, String path) throws IOException {
-            String[] parts = path.split("/");
-            if (parts.length < 4) {
-                sendError(exchange, 400, "ID não fornecido");
-                return;
-            }
-
-            Long id = Long.parseLong(parts[3]);
-            String body = readBody(exchange);
-            Categoria categoria = parseCategoria(body);
+        private void handlePut(HttpExchange exchange, long id) throws IOException {
+            Categoria categoria = lerJson(exchange, CategoriasHandler::lerCategoria);
             categoria.setId(id);
 
             Categoria atualizada = categoriaService.atualizarCategoria(categoria);
-            String json = toJson(atualizada);
-            sendJsonResponse(exchange, 200, json);
+            sendJson(exchange, 200, w -> escrever(w, atualizada));
         }
 
-        private void handleDelete(HttpExchange exchange, String path) throws IOException {
-            String[] parts = path.split("/");
-            if (parts.length < 4) {
-                sendError(exchange, 400, "ID não fornecido");
-                return;
-            }
-
-            Long id = Long.parseLong(parts[3]);
+        private void handleDelete(HttpExchange exchange, long id) throws IOException {
             categoriaService.removerCategoria(id);
             exchange.sendResponseHeaders(204, -1);
         }
 
-        private Categoria parseCategoria(String json) {
+        static Categoria lerCategoria(JsonReader r) throws IOException {
             Categoria c = new Categoria();
-            c.setNome(extractValue(json, "nome"));
-            c.setDescricao(extractValue(json, "descricao"));
-            
-            c.setTamanho(extractValue(json, "tamanho"));
-            c.setEmbalagem(extractValue(json, "embalagem"));
-            return c;
-        }
-
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "nome" -> c.setNome(r.nextString());
+                    case "descricao" -> c.setDescricao(r.nextString());
+                    case "tamanho" -> c.setTamanho(r.nextString());
+                    case "embalagem" -> c.setEmbalagem(r.nextString());
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
 
-        private String toJsonArray(List<Categoria> categorias) {
-            return categorias.stream()
-                    .map(this::toJson)
-                    .collect(Collectors.joining(",", "[", "]"));
+            exigir(c.getNome(), "nome");
+            exigir(c.getTamanho(), "tamanho");
+            exigir(c.getEmbalagem(), "embalagem");
+            return c;
         }
 
-        private String toJson(Categoria c) {
-            return String.format(
-                "{\"id\":%d,\"nome\":\"%s\",\"descricao\":\"%s\",\"tamanho\":\"%s\",\"embalagem\":\"%s\"}",
-                c.getId(),
-                escape(c.getNome()),
-                escape(c.getDescricao() != null ? c.getDescricao() : ""),
-                escape(c.getTamanho() != null ? c.getTamanho() : ""),
-                escape(c.getEmbalagem() != null ? c.getEmbalagem() : "")
-            );
+        static void escrever(JsonWriter w, Categoria c) throws IOException {
+            w.beginObject()
+                    .name("id").value(c.getId())
+                    .name("nome").value(c.getNome() != null ? c.getNome() : "")
+                    .name("descricao").value(c.getDescricao() != null ? c.getDescricao() : "")
+                    .name("tamanho").value(c.getTamanho() != null ? c.getTamanho() : "")
+                    .name("embalagem").value(c.getEmbalagem() != null ? c.getEmbalagem() : "")
+                    .endObject();
         }
 
     }
 
     // ==================== HANDLER DE MOVIMENTAÇÕES ====================
-    static class MovimentacoesHandler implements HttpHandler {
+    static class MovimentacoesHandler {
+        // Mesmo tamanho da coluna chaves_idempotencia.chave
+        private static final int MAX_TAMANHO_CHAVE = 200;
+
         private final MovimentacaoService movimentacaoService;
+        private final int tamanhoMaximoLote = Env.getInt("MOV_LOTE_MAX", 10_000);
+        private final int limitePadrao = Env.getInt("MOV_PAGINA_PADRAO", 100);
+        private final int limiteMaximo = Env.getInt("MOV_PAGINA_MAX", 1_000);
+        private final int loteExportacao = Env.getInt("MOV_EXPORT_LOTE", 1_000);
+        // Cada exportação segura uma conexão do pool até o fim do download
+        private final Semaphore exportacoes = new Semaphore(Env.getInt("MOV_EXPORT_SIMULTANEAS", 2));
 
         public MovimentacoesHandler(MovimentacaoService movimentacaoService) {
             this.movimentacaoService = movimentacaoService;
         }
 
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            try {
-                String method = exchange.getRequestMethod().toUpperCase();
+        void registrar(Roteador roteador) {
+            roteador.adicionar("GET", "/api/movimentacoes", (exchange, p) -> handleGet(exchange))
+                    .adicionar("POST", "/api/movimentacoes", (exchange, p) -> handlePost(exchange))
+                    .adicionar("POST", "/api/movimentacoes/lote", (exchange, p) -> handlePostLote(exchange))
+                    .adicionar("GET", "/api/movimentacoes/export", (exchange, p) -> handleExport(exchange));
+        }
 
-                addCorsHeaders(exchange.getResponseHeaders());
+        // GET /api/movimentacoes/export?format=csv|ndjson&produtoId=&tipo=&de=&ate=
+        // Histórico inteiro em ordem cronológica, lido do cursor e enviado em chunks conforme chega
+        private void handleExport(HttpExchange exchange) throws IOException {
+            Map<String, String> parametros = lerParametros(exchange);
+            FiltroMovimentacao filtro = lerFiltro(parametros);
+            String formato = parametros.getOrDefault("format", "csv").trim().toLowerCase();
+            if (!formato.equals("csv") && !formato.equals("ndjson")) {
+                throw new RequisicaoInvalidaException("format inválido: " + formato + " (use csv ou ndjson)");
+            }
 
-                if ("OPTIONS".equals(method)) {
-                    exchange.sendResponseHeaders(204, -1);
-                    return;
+            if (!exportacoes.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "30");
+                sendError(exchange, 503, "Muitas exportações em andamento, tente novamente");
+                return;
+            }
+            try {
+                Headers headers = exchange.getResponseHeaders();
+                headers.set("Content-Type", formato.equals("csv")
+                        ? "text/csv; charset=utf-8"
+                        : "application/x-ndjson; charset=utf-8");
+                headers.set("Content-Disposition", "attachment; filename=\"movimentacoes." + formato + "\"");
+                if (Compressao.HABILITADA) {
+                    headers.set("Vary", "Accept-Encoding");
                 }
 
-                if ("GET".equals(method)) {
-                    handleGet(exchange);
-                } else if ("POST".equals(method)) {
-                    handlePost(exchange);
-                } else {
-                    exchange.sendResponseHeaders(405, -1);
+                SaidaResposta saida = new SaidaResposta(exchange, 200, Compressao.negociar(exchange));
+                try {
+                    if (formato.equals("csv")) {
+                        exportarCsv(saida, filtro);
+                    } else {
+                        exportarNdjson(saida, filtro);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (!saida.iniciada()) {
+                        throw e;
+                    }
+                    // Sem fechar a saída: o chunk final faria o arquivo truncado parecer completo
+                    System.err.println("Exportação de movimentações interrompida: " + e);
+                    throw new RespostaInterrompidaException(e);
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendError(exchange, 500, "Erro interno no servidor");
+            } finally {
+                exportacoes.release();
             }
         }
 
+        private void exportarCsv(OutputStream saida, FiltroMovimentacao filtro) throws IOException {
+            CsvWriter csv = new CsvWriter(saida, 64 * 1024);
+            csv.value("id").value("data").value("produto_id").value("produto_nome")
+                    .value("tipo").value("quantidade").endRow();
+            movimentacaoService.exportarMovimentacoes(filtro, loteExportacao, m -> csv
+                    .value(m.getId())
+                    .value(textoData(m.getDataMovimentacao()))
+                    .value(m.getProduto().getId())
+                    .value(m.getProduto().getNome())
+                    .value(m.getTipoMovimentacao().name())
+                    .value(m.getQuantidadeMovimentada())
+                    .endRow());
+            csv.close();
+        }
+
+        private void exportarNdjson(OutputStream saida, FiltroMovimentacao filtro) throws IOException {
+            JsonWriter w = new JsonWriter(saida, 64 * 1024);
+            movimentacaoService.exportarMovimentacoes(filtro, loteExportacao, m -> w.beginObject()
+                    .name("id").value(m.getId())
+                    .name("data").value(textoData(m.getDataMovimentacao()))
+                    .name("produtoId").value(m.getProduto().getId())
+                    .name("produtoNome").value(m.getProduto().getNome())
+                    .name("tipo").value(m.getTipoMovimentacao().name())
+                    .name("quantidade").value(m.getQuantidadeMovimentada())
+                    .endObject()
+                    .endLine());
+            w.close();
+        }
+
+        // GET /api/movimentacoes?limit=&cursor=&produtoId=&tipo=&de=&ate=
+        // O corpo continua sendo um array; o cursor da próxima página vai no cabeçalho X-Next-Cursor
         private void handleGet(HttpExchange exchange) throws IOException {
-            List<Movimentacao> movimentacoes = movimentacaoService.listarMovimentacoes();
-            String json = toJsonArray(movimentacoes);
-            sendJsonResponse(exchange, 200, json);
+            Map<String, String> parametros = lerParametros(exchange);
+            FiltroMovimentacao filtro = lerFiltro(parametros);
+            CursorMovimentacao cursor = decodificarCursor(parametros.get("cursor"));
+
+            Long limiteInformado = parametroLong(parametros, "limit");
+            int limite = limiteInformado != null ? limiteInformado.intValue() : limitePadrao;
+            if (limiteInformado != null && (limiteInformado < 1 || limiteInformado > limiteMaximo)) {
+                throw new RequisicaoInvalidaException("limit deve estar entre 1 e " + limiteMaximo);
+            }
+
+            Pagina<Movimentacao> pagina = movimentacaoService.listarMovimentacoes(filtro, cursor, limite);
+            if (pagina.temMais()) {
+                Movimentacao ultima = pagina.itens().get(pagina.itens().size() - 1);
+                exchange.getResponseHeaders().set("X-Next-Cursor", codificarCursor(ultima));
+            }
+            sendJson(exchange, 200, w -> w.array(pagina.itens(), MovimentacoesHandler::escrever));
         }
 
-        private void handlePost(HttpExchange exchange) throws IOException {
-            String body = readBody(exchange);
+        static FiltroMovimentacao lerFiltro(Map<String, String> parametros) {
+            String tipo = parametros.get("tipo");
+            TipoMovimentacao tipoFiltro = null;
+            if (tipo != null && !tipo.isBlank()) {
+                try {
+                    tipoFiltro = TipoMovimentacao.valueOf(tipo.trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new RequisicaoInvalidaException("tipo inválido: " + tipo + " (use ENTRADA ou SAIDA)");
+                }
+            }
+            return new FiltroMovimentacao(
+                    parametroLong(parametros, "produtoId"),
+                    tipoFiltro,
+                    parametroData(parametros, "de"),
+                    parametroData(parametros, "ate"));
+        }
 
-            Long produtoId = Long.parseLong(extractValue(body, "produtoId"));
-            String tipoStr = extractValue(body, "tipo");
-            int quantidade = Integer.parseInt(extractValue(body, "quantidade"));
-            String dataStr = extractValue(body, "data");
+        // Cursor opaco para o cliente: base64url de "data|id"
+        private static String codificarCursor(Movimentacao m) {
+            String bruto = m.getDataMovimentacao() + "|" + m.getId();
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(bruto.getBytes(StandardCharsets.UTF_8));
+        }
 
-            TipoMovimentacao tipo = TipoMovimentacao.valueOf(tipoStr);
-            LocalDate data = LocalDate.parse(dataStr);
+        private static CursorMovimentacao decodificarCursor(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String bruto = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+                int separador = bruto.indexOf('|');
+                return new CursorMovimentacao(
+                        LocalDate.parse(bruto.substring(0, separador)),
+                        Long.parseLong(bruto.substring(separador + 1)));
+            } catch (RuntimeException e) {
+                throw new RequisicaoInvalidaException("cursor inválido");
+            }
+        }
+
+        private void handlePost(HttpExchange exchange) throws IOException {
+            ComandoMovimentacao comando = lerJson(exchange, MovimentacoesHandler::lerComando);
+
+            String chave = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            if (chave != null) {
+                if (chave.isBlank() || chave.length() > MAX_TAMANHO_CHAVE) {
+                    throw new RequisicaoInvalidaException(
+                            "Idempotency-Key deve ter de 1 a " + MAX_TAMANHO_CHAVE + " caracteres");
+                }
+                ResultadoIdempotente resultado = movimentacaoService.registrarMovimentacao(comando, chave, criada -> {
+                    try {
+                        return codificarJson(w -> escrever(w, criada));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (resultado.repetida()) {
+                    exchange.getResponseHeaders().set("Idempotent-Replayed", "true");
+                }
+                sendJson(exchange, resultado.status(), resultado.corpo());
+                return;
+            }
 
             Movimentacao criada = movimentacaoService.registrarMovimentacao(
-                    produtoId, tipo, quantidade, data
+                    comando.produtoId(), comando.tipo(), comando.quantidade(), comando.data()
             );
 
-            String json = toJson(criada);
-            sendJsonResponse(exchange, 201, json);
+            sendJson(exchange, 201, w -> escrever(w, criada));
+        }
+
+        // modo=atomico (padrão): tudo ou nada; modo=individual: cada item tem seu próprio resultado
+        private void handlePostLote(HttpExchange exchange) throws IOException {
+            String modo = lerParametros(exchange).getOrDefault("modo", "atomico");
+            if (!modo.equals("atomico") && !modo.equals("individual")) {
+                throw new RequisicaoInvalidaException("modo inválido: " + modo + " (use atomico ou individual)");
+            }
+
+            List<ComandoMovimentacao> comandos = lerJson(exchange, r -> r.nextList(MovimentacoesHandler::lerComando));
+            if (comandos.isEmpty()) {
+                throw new RequisicaoInvalidaException("Lote vazio");
+            }
+            if (comandos.size() > tamanhoMaximoLote) {
+                throw new RequisicaoInvalidaException("Lote com " + comandos.size()
+                        + " itens excede o máximo de " + tamanhoMaximoLote);
+            }
+
+            ResultadoLote resultado = movimentacaoService.registrarLote(comandos, modo.equals("atomico"));
+
+            int status = resultado.isAplicado() ? (resultado.getRegistradas() > 0 ? 201 : 200) : 409;
+            sendJson(exchange, status, w -> {
+                w.beginObject()
+                        .name("aplicado").value(resultado.isAplicado())
+                        .name("total").value(resultado.getTotal())
+                        .name("registradas").value(resultado.getRegistradas())
+                        .name("falhas").value(resultado.getTotal() - resultado.getRegistradas())
+                        .name("tempoMs").value(resultado.getDuracaoNanos() / 1_000_000)
+                        .name("eventosPorSegundo").value(resultado.getEventosPorSegundo())
+                        .name("itens").array(resultado.getItens(), (jw, item) -> {
+                            jw.beginObject()
+                                    .name("indice").value(item.indice())
+                                    .name("situacao").value(item.situacao().name());
+                            if (item.movimentacao() != null) {
+                                jw.name("movimentacao");
+                                escrever(jw, item.movimentacao());
+                            }
+                            jw.endObject();
+                        });
+                w.endObject();
+            });
         }
 
-        private String toJsonArray(List<Movimentacao> movimentacoes) {
-            return movimentacoes.stream()
-                    .map(this::toJson)
-                    .collect(Collectors.joining(",", "[", "]"));
+        static ComandoMovimentacao lerComando(JsonReader r) throws IOException {
+            Long produtoId = null;
+            TipoMovimentacao tipo = null;
+            Integer quantidade = null;
+            LocalDate data = null;
+
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "produtoId" -> produtoId = r.nextLongOrNull();
+                    case "tipo" -> tipo = lerTipo(r);
+                    case "quantidade" -> quantidade = r.nextInt();
+                    case "data" -> data = lerData(r);
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
+
+            exigir(produtoId, "produtoId");
+            exigir(tipo, "tipo");
+            exigir(quantidade, "quantidade");
+            exigir(data, "data");
+            if (quantidade <= 0) {
+                throw new JsonParseException("quantidade deve ser maior que zero");
+            }
+            return new ComandoMovimentacao(produtoId, tipo, quantidade, data);
         }
 
-        private String toJson(Movimentacao m) {
-            return String.format(
-                    "{\"id\":%d,\"produtoId\":%d,\"tipo\":\"%s\",\"quantidade\":%d,\"data\":\"%s\"}",
-                    m.getId(),
-                    m.getProduto().getId(),
-                    m.getTipoMovimentacao(),
-                    m.getQuantidadeMovimentada(),
-                    m.getDataMovimentacao()
-            );
+        private static TipoMovimentacao lerTipo(JsonReader r) throws IOException {
+            String valor = r.nextString();
+            if (valor == null) {
+                return null;
+            }
+            try {
+                return TipoMovimentacao.valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException("tipo inválido: " + valor + " (use ENTRADA ou SAIDA)");
+            }
+        }
+
+        private static LocalDate lerData(JsonReader r) throws IOException {
+            String valor = r.nextString();
+            if (valor == null) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(valor.trim());
+            } catch (DateTimeParseException e) {
+                throw new JsonParseException("data inválida: " + valor + " (use AAAA-MM-DD)");
+            }
+        }
+
+        static void escrever(JsonWriter w, Movimentacao m) throws IOException {
+            w.beginObject()
+                    .name("id").value(m.getId())
+                    .name("produtoId").value(m.getProduto().getId())
+                    .name("tipo").value(m.getTipoMovimentacao().name())
+                    .name("quantidade").value(m.getQuantidadeMovimentada())
+                    .name("data").value(textoData(m.getDataMovimentacao()))
+                    .endObject();
         }
     }
 
     // ==================== HANDLER DE RELATÓRIOS - PREÇOS ====================
     static class RelatoriosPrecosHandler implements HttpHandler {
         private final RelatorioService relatorioService;
+        private final RespostaVersionada resposta = new RespostaVersionada();
 
         public RelatoriosPrecosHandler(RelatorioService relatorioService) {
             this.relatorioService = relatorioService;
@@ -460,48 +938,30 @@ public class HttpApiServer {
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            try {
-                addCorsHeaders(exchange.getResponseHeaders());
-
-                if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                    exchange.sendResponseHeaders(204, -1);
-                    return;
-                }
-
-                List<Produto> produtos = relatorioService.gerarListaPrecos();
-
-                String json = produtos.stream()
-                        .map(p -> String.format(
-                                "{" +
-                                "\"id\":%d," +
-                                "\"nome\":\"%s\"," +
-                                "\"precoUnitario\":%s," +
-                                "\"unidade\":\"%s\"," +
-                                "\"quantidadeEstoque\":%d," +
-                                "\"categoriaNome\":\"%s\"" +
-                                "}",
-                                p.getId(),
-                                escape(p.getNome()),
-                                p.getPrecoUnitario(),
-                                escape(p.getUnidade()),
-                                p.getQuantidadeEstoque(),
-                                escape(p.getCategoria() != null && p.getCategoria().getNome() != null
-                                        ? p.getCategoria().getNome()
-                                        : "")
-                        ))
-                        .collect(Collectors.joining(",", "[", "]"));
-
-                sendJsonResponse(exchange, 200, json);
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendError(exchange, 500, "Erro interno no servidor");
+            String versao = relatorioService.versaoPrecos();
+            if (naoModificado(exchange, versao) || resposta.reaproveitar(exchange, versao)) {
+                return;
             }
+
+            List<Produto> produtos = relatorioService.gerarListaPrecos();
+
+            resposta.enviar(exchange, versao, w -> w.array(produtos, (jw, p) -> jw.beginObject()
+                    .name("id").value(p.getId())
+                    .name("nome").value(p.getNome())
+                    .name("precoUnitario").value(p.getPrecoUnitario())
+                    .name("unidade").value(p.getUnidade())
+                    .name("quantidadeEstoque").value(p.getQuantidadeEstoque())
+                    .name("categoriaNome").value(p.getCategoria() != null && p.getCategoria().getNome() != null
+                            ? p.getCategoria().getNome()
+                            : "")
+                    .endObject()));
         }
     }
 
     // ==================== HANDLER DE RELATÓRIOS - BALANÇO ====================
     static class RelatoriosBalancoHandler implements HttpHandler {
         private final RelatorioService relatorioService;
+        private final RespostaVersionada resposta = new RespostaVersionada();
 
         public RelatoriosBalancoHandler(RelatorioService relatorioService) {
             this.relatorioService = relatorioService;
@@ -509,27 +969,21 @@ public class HttpApiServer {
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            try {
-                addCorsHeaders(exchange.getResponseHeaders());
-
-                if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                    exchange.sendResponseHeaders(204, -1);
-                    return;
-                }
-
-                BigDecimal valorTotal = relatorioService.calcularValorTotalEstoque();
-                String json = String.format("{\"valorTotal\":%s}", valorTotal);
-
-                sendJsonResponse(exchange, 200, json);
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendError(exchange, 500, "Erro interno no servidor");
+            String versao = relatorioService.versaoEstoque();
+            if (naoModificado(exchange, versao) || resposta.reaproveitar(exchange, versao)) {
+                return;
             }
+
+            BigDecimal valorTotal = relatorioService.calcularValorTotalEstoque();
+            resposta.enviar(exchange, versao, w -> w.beginObject()
+                    .name("valorTotal").value(valorTotal)
+                    .endObject());
         }
     }
 
     static class RelatoriosAbaixoMinimoHandler implements HttpHandler {
         private final RelatorioService relatorioService;
+        private final RespostaVersionada resposta = new RespostaVersionada();
 
         public RelatoriosAbaixoMinimoHandler(RelatorioService relatorioService) {
             this.relatorioService = relatorioService;
@@ -537,41 +991,25 @@ public class HttpApiServer {
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            try {
-                addCorsHeaders(exchange.getResponseHeaders());
+            String versao = relatorioService.versaoEstoque();
+            if (naoModificado(exchange, versao) || resposta.reaproveitar(exchange, versao)) {
+                return;
+            }
 
-                if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                    exchange.sendResponseHeaders(204, -1);
-                    return;
-                }
+            List<Produto> produtos = relatorioService.listarProdutosAbaixoDoMinimo();
 
-                List<Produto> produtos = relatorioService.listarProdutosAbaixoDoMinimo();
-
-                String json = produtos.stream()
-                        .map(p -> String.format(
-                                "{" +
-                                "\"id\":%d," +
-                                "\"nome\":\"%s\"," +
-                                "\"quantidadeEstoque\":%d," +
-                                "\"quantidadeMinima\":%d" +
-                                "}",
-                                p.getId(),
-                                escape(p.getNome()),
-                                p.getQuantidadeEstoque(),
-                                p.getQuantidadeMinima()
-                        ))
-                        .collect(Collectors.joining(",", "[", "]"));
-
-                sendJsonResponse(exchange, 200, json);
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendError(exchange, 500, "Erro interno no servidor");
-            }
+            resposta.enviar(exchange, versao, w -> w.array(produtos, (jw, p) -> jw.beginObject()
+                    .name("id").value(p.getId())
+                    .name("nome").value(p.getNome())
+                    .name("quantidadeEstoque").value(p.getQuantidadeEstoque())
+                    .name("quantidadeMinima").value(p.getQuantidadeMinima())
+                    .endObject()));
         }
     }
 
     static class RelatoriosProdutosPorCategoriaHandler implements HttpHandler {
         private final RelatorioService relatorioService;
+        private final RespostaVersionada resposta = new RespostaVersionada();
 
         public RelatoriosProdutosPorCategoriaHandler(RelatorioService relatorioService) {
             this.relatorioService = relatorioService;
@@ -579,37 +1017,24 @@ public class HttpApiServer {
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            try {
-                addCorsHeaders(exchange.getResponseHeaders());
-
-                if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                    exchange.sendResponseHeaders(204, -1);
-                    return;
-                }
-
-                Map<String, Long> mapa = relatorioService.contarProdutosPorCategoria();
+            String versao = relatorioService.versaoEstoque();
+            if (naoModificado(exchange, versao) || resposta.reaproveitar(exchange, versao)) {
+                return;
+            }
 
-                String json = mapa.entrySet().stream()
-                        .map(e -> String.format(
-                                "{" +
-                                "\"categoria\":\"%s\"," +
-                                "\"quantidade\":%d" +
-                                "}",
-                                escape(e.getKey()),
-                                e.getValue()
-                        ))
-                        .collect(Collectors.joining(",", "[", "]"));
+            List<TotalCategoria> totais = relatorioService.totaisPorCategoria();
 
-                sendJsonResponse(exchange, 200, json);
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendError(exchange, 500, "Erro interno no servidor");
-            }
+            resposta.enviar(exchange, versao, w -> w.array(totais, (jw, t) -> jw.beginObject()
+                    .name("categoria").value(t.categoria())
+                    .name("quantidade").value(t.quantidade())
+                    .name("valorTotal").value(t.valor())
+                    .endObject()));
         }
     }
 
     static class RelatoriosMovimentacoesTopHandler implements HttpHandler {
         private final RelatorioService relatorioService;
+        private final RespostaVersionada resposta = new RespostaVersionada();
 
         public RelatoriosMovimentacoesTopHandler(RelatorioService relatorioService) {
             this.relatorioService = relatorioService;
@@ -617,46 +1042,47 @@ public class HttpApiServer {
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            try {
-                addCorsHeaders(exchange.getResponseHeaders());
-
-                if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                    exchange.sendResponseHeaders(204, -1);
-                    return;
-                }
+            // de/ate opcionais (AAAA-MM-DD, inclusivos): só as partições do intervalo são lidas
+            Map<String, String> parametros = lerParametros(exchange);
+            LocalDate de = parametroData(parametros, "de");
+            LocalDate ate = parametroData(parametros, "ate");
+            boolean comIntervalo = de != null || ate != null;
+
+            String versao = relatorioService.versaoMovimentacoes();
+            if (comIntervalo) {
+                versao += "-" + de + "-" + ate;
+            }
+            // O corpo guardado é só o do relatório completo
+            if (naoModificado(exchange, versao) || (!comIntervalo && resposta.reaproveitar(exchange, versao))) {
+                return;
+            }
 
-                RelatorioService.MovimentacaoResumoMovimento resumo =
-                        relatorioService.calcularMaiorEntradaESaida();
-
-                Produto pEntrada = resumo.getProdutoMaisEntrada();
-                Produto pSaida   = resumo.getProdutoMaisSaida();
-
-                String json = String.format(
-                        "{" +
-                        "\"maisEntrada\":{" +
-                            "\"produtoId\":%s," +
-                            "\"nome\":\"%s\"," +
-                            "\"quantidade\":%d" +
-                        "}," +
-                        "\"maisSaida\":{" +
-                            "\"produtoId\":%s," +
-                            "\"nome\":\"%s\"," +
-                            "\"quantidade\":%d" +
-                        "}" +
-                        "}",
-                        pEntrada != null ? pEntrada.getId() : null,
-                        escape(pEntrada != null ? pEntrada.getNome() : ""),
-                        resumo.getQuantidadeEntrada(),
-                        pSaida != null ? pSaida.getId() : null,
-                        escape(pSaida != null ? pSaida.getNome() : ""),
-                        resumo.getQuantidadeSaida()
-                );
-
-                sendJsonResponse(exchange, 200, json);
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendError(exchange, 500, "Erro interno no servidor");
+            RelatorioService.MovimentacaoResumoMovimento resumo =
+                    relatorioService.calcularMaiorEntradaESaida(de, ate);
+
+            Produto pEntrada = resumo.getProdutoMaisEntrada();
+            Produto pSaida   = resumo.getProdutoMaisSaida();
+
+            CorpoJson corpo = w -> {
+                w.beginObject().name("maisEntrada");
+                escreverDestaque(w, pEntrada, resumo.getQuantidadeEntrada());
+                w.name("maisSaida");
+                escreverDestaque(w, pSaida, resumo.getQuantidadeSaida());
+                w.endObject();
+            };
+            if (comIntervalo) {
+                sendJson(exchange, 200, corpo);
+            } else {
+                resposta.enviar(exchange, versao, corpo);
             }
         }
+
+        private static void escreverDestaque(JsonWriter w, Produto p, long quantidade) throws IOException {
+            w.beginObject()
+                    .name("produtoId").value(p != null ? p.getId() : null)
+                    .name("nome").value(p != null && p.getNome() != null ? p.getNome() : "")
+                    .name("quantidade").value(quantidade)
+                    .endObject();
+        }
     }
 }
@@ -0,0 +1,15 @@
+package com.estoque.server;
+
+/**
+ * Corpo de requisição malformado ou com campos inválidos; vira resposta 400.
+ */
+public class JsonParseException extends RequisicaoInvalidaException {
+
+    public JsonParseException(String message) {
+        super(message);
+    }
+
+    public JsonParseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,484 @@
+package com.estoque.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Leitor de JSON em passada única (pull parser) sobre o corpo da requisição.
+ *
+ * Os handlers percorrem o documento com beginObject/nextName/next*, ligando
+ * cada campo direto no objeto de destino. Qualquer erro de sintaxe ou de tipo
+ * gera JsonParseException com a posição aproximada do problema.
+ */
+public final class JsonReader {
+
+    @FunctionalInterface
+    public interface ElementReader<T> {
+        T read(JsonReader r) throws IOException;
+    }
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY,
+        NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    // Limites de nextBigDecimal() e do tamanho do texto de qualquer número
+    private static final int MAX_ESCALA_PADRAO = 20;
+    private static final int MAX_DIGITOS_INTEIROS_PADRAO = 20;
+    private static final int MAX_TAMANHO_NUMERO = 64;
+
+    private final Reader in;
+    private final char[] buf = new char[4096];
+    private int pos;
+    private int limite;
+    private long consumidos;
+
+    private int[] pilha = new int[16];
+    private int tamanhoPilha;
+
+    private Token peeked;
+    private final StringBuilder literal = new StringBuilder();
+
+    public JsonReader(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        pilha[tamanhoPilha++] = EMPTY_DOCUMENT;
+    }
+
+    // ==================== ESTRUTURA ====================
+
+    public void beginObject() throws IOException {
+        esperar(Token.BEGIN_OBJECT);
+        empilhar(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        esperar(Token.END_OBJECT);
+        tamanhoPilha--;
+    }
+
+    public void beginArray() throws IOException {
+        esperar(Token.BEGIN_ARRAY);
+        empilhar(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        esperar(Token.END_ARRAY);
+        tamanhoPilha--;
+    }
+
+    public boolean hasNext() throws IOException {
+        Token p = peek();
+        return p != Token.END_OBJECT && p != Token.END_ARRAY && p != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        esperar(Token.NAME);
+        return lerString();
+    }
+
+    /**
+     * Garante que não há nada além de espaços depois do documento.
+     */
+    public void endDocument() throws IOException {
+        esperar(Token.END_DOCUMENT);
+    }
+
+    public <T> List<T> nextList(ElementReader<T> elemento) throws IOException {
+        List<T> lista = new ArrayList<>();
+        beginArray();
+        while (hasNext()) {
+            lista.add(elemento.read(this));
+        }
+        endArray();
+        return lista;
+    }
+
+    // ==================== VALORES ====================
+
+    public boolean isNull() throws IOException {
+        return peek() == Token.NULL;
+    }
+
+    public String nextString() throws IOException {
+        Token p = peek();
+        peeked = null;
+        return switch (p) {
+            case STRING -> lerString();
+            case NUMBER, BOOLEAN -> literal.toString();
+            case NULL -> null;
+            default -> throw erro("esperava texto mas encontrou " + p);
+        };
+    }
+
+    public long nextLong() throws IOException {
+        String valor = nextNumero();
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw erro("número inteiro inválido: " + valor);
+        }
+    }
+
+    public int nextInt() throws IOException {
+        long valor = nextLong();
+        if (valor < Integer.MIN_VALUE || valor > Integer.MAX_VALUE) {
+            throw erro("número fora do intervalo permitido: " + valor);
+        }
+        return (int) valor;
+    }
+
+    /**
+     * Lê um id opcional: null ou texto vazio ("categoriaId": "") viram null.
+     */
+    public Long nextLongOrNull() throws IOException {
+        Token p = peek();
+        if (p == Token.NULL) {
+            nextNull();
+            return null;
+        }
+        String valor = nextNumero();
+        if (valor.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw erro("número inteiro inválido: " + valor);
+        }
+    }
+
+    public BigDecimal nextBigDecimal() throws IOException {
+        return nextBigDecimal(MAX_ESCALA_PADRAO, MAX_DIGITOS_INTEIROS_PADRAO);
+    }
+
+    /**
+     * Lê um decimal com no máximo maxEscala casas depois da vírgula e maxDigitosInteiros
+     * antes dela. O expoente vem do cliente: sem limite, "1e-99999999" é lido na hora,
+     * mas qualquer conta com ele (add, multiply, setScale) leva minutos.
+     */
+    public BigDecimal nextBigDecimal(int maxEscala, int maxDigitosInteiros) throws IOException {
+        String valor = nextNumero();
+        BigDecimal numero;
+        try {
+            numero = new BigDecimal(valor);
+        } catch (NumberFormatException e) {
+            throw erro("número decimal inválido: " + valor);
+        }
+        if (numero.scale() > maxEscala) {
+            throw erro("número com mais de " + maxEscala + " casas decimais: " + valor);
+        }
+        // precision - scale = dígitos antes da vírgula (também limita expoentes positivos, 1e999)
+        if (numero.signum() != 0 && numero.precision() - numero.scale() > maxDigitosInteiros) {
+            throw erro("número fora do intervalo permitido: " + valor);
+        }
+        return numero;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        esperar(Token.BOOLEAN);
+        return literal.charAt(0) == 't';
+    }
+
+    public void nextNull() throws IOException {
+        esperar(Token.NULL);
+    }
+
+    public void skipValue() throws IOException {
+        int profundidade = 0;
+        do {
+            Token p = peek();
+            switch (p) {
+                case BEGIN_OBJECT -> { beginObject(); profundidade++; }
+                case BEGIN_ARRAY -> { beginArray(); profundidade++; }
+                case END_OBJECT -> { endObject(); profundidade--; }
+                case END_ARRAY -> { endArray(); profundidade--; }
+                case NAME, STRING -> { peeked = null; pularString(); }
+                case END_DOCUMENT -> throw erro("fim inesperado do JSON");
+                default -> peeked = null;
+            }
+        } while (profundidade > 0);
+    }
+
+    public JsonParseException erro(String mensagem) {
+        return new JsonParseException("JSON inválido na posição " + (consumidos - (limite - pos)) + ": " + mensagem);
+    }
+
+    // Números também são aceitos entre aspas ("produtoId": "1"), como o parser antigo fazia
+    private String nextNumero() throws IOException {
+        Token p = peek();
+        peeked = null;
+        String valor = switch (p) {
+            case NUMBER -> literal.toString();
+            case STRING -> lerString().trim();
+            default -> throw erro("esperava número mas encontrou " + p);
+        };
+        if (valor.length() > MAX_TAMANHO_NUMERO) {
+            throw erro("número com mais de " + MAX_TAMANHO_NUMERO + " caracteres");
+        }
+        return valor;
+    }
+
+    // ==================== TOKENIZAÇÃO ====================
+
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        int topo = pilha[tamanhoPilha - 1];
+        int c;
+        switch (topo) {
+            case EMPTY_ARRAY -> {
+                pilha[tamanhoPilha - 1] = NONEMPTY_ARRAY;
+                c = proximoNaoBranco();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                return peeked = lerInicioDeValor(c);
+            }
+            case NONEMPTY_ARRAY -> {
+                c = proximoNaoBranco();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw erro("esperava ',' ou ']'");
+                }
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                pilha[tamanhoPilha - 1] = DANGLING_NAME;
+                c = proximoNaoBranco();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (topo == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw erro("esperava ',' ou '}'");
+                    }
+                    c = proximoNaoBranco();
+                }
+                if (c != '"') {
+                    throw erro("esperava nome de campo entre aspas");
+                }
+                return peeked = Token.NAME;
+            }
+            case DANGLING_NAME -> {
+                pilha[tamanhoPilha - 1] = NONEMPTY_OBJECT;
+                if (proximoNaoBranco() != ':') {
+                    throw erro("esperava ':' após o nome do campo");
+                }
+            }
+            case EMPTY_DOCUMENT -> pilha[tamanhoPilha - 1] = NONEMPTY_DOCUMENT;
+            default -> {
+                if (proximoNaoBranco() != -1) {
+                    throw erro("conteúdo após o fim do documento");
+                }
+                return peeked = Token.END_DOCUMENT;
+            }
+        }
+
+        return peeked = lerInicioDeValor(proximoNaoBranco());
+    }
+
+    private Token lerInicioDeValor(int c) throws IOException {
+        switch (c) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case '"': return Token.STRING;
+            case 't': lerPalavra("true"); return Token.BOOLEAN;
+            case 'f': lerPalavra("false"); return Token.BOOLEAN;
+            case 'n': lerPalavra("null"); return Token.NULL;
+            case -1: throw erro("fim inesperado do JSON");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    lerNumero(c);
+                    return Token.NUMBER;
+                }
+                throw erro("caractere inesperado '" + (char) c + "'");
+        }
+    }
+
+    private void lerPalavra(String palavra) throws IOException {
+        literal.setLength(0);
+        literal.append(palavra.charAt(0));
+        for (int i = 1; i < palavra.length(); i++) {
+            if (ler() != palavra.charAt(i)) {
+                throw erro("literal inválido, esperava " + palavra);
+            }
+            literal.append(palavra.charAt(i));
+        }
+        verificarDelimitador();
+    }
+
+    private void lerNumero(int primeiro) throws IOException {
+        literal.setLength(0);
+        literal.append((char) primeiro);
+        while (true) {
+            if (pos == limite && !preencher()) {
+                break;
+            }
+            char c = buf[pos];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                if (literal.length() == MAX_TAMANHO_NUMERO) {
+                    throw erro("número com mais de " + MAX_TAMANHO_NUMERO + " caracteres");
+                }
+                literal.append(c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        verificarDelimitador();
+    }
+
+    private void verificarDelimitador() throws IOException {
+        if (pos == limite && !preencher()) {
+            return;
+        }
+        char c = buf[pos];
+        if (c != ',' && c != '}' && c != ']' && c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+            throw erro("caractere inesperado '" + c + "'");
+        }
+    }
+
+    private String lerString() throws IOException {
+        StringBuilder sb = null;
+        while (true) {
+            int inicio = pos;
+            while (pos < limite) {
+                char c = buf[pos];
+                if (c == '"') {
+                    String parte = new String(buf, inicio, pos - inicio);
+                    pos++;
+                    return sb == null ? parte : sb.append(parte).toString();
+                }
+                if (c == '\\' || c < 0x20) {
+                    break;
+                }
+                pos++;
+            }
+
+            if (sb == null) {
+                sb = new StringBuilder(Math.max(16, pos - inicio));
+            }
+            sb.append(buf, inicio, pos - inicio);
+
+            if (pos == limite) {
+                if (!preencher()) {
+                    throw erro("texto não terminado");
+                }
+                continue;
+            }
+
+            char c = buf[pos++];
+            if (c < 0x20) {
+                throw erro("caractere de controle não escapado em texto");
+            }
+            sb.append(lerEscape());
+        }
+    }
+
+    private void pularString() throws IOException {
+        while (true) {
+            int c = ler();
+            if (c == '"') {
+                return;
+            }
+            if (c == -1) {
+                throw erro("texto não terminado");
+            }
+            if (c == '\\') {
+                lerEscape();
+            }
+        }
+    }
+
+    private char lerEscape() throws IOException {
+        int c = ler();
+        switch (c) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int valor = 0;
+                for (int i = 0; i < 4; i++) {
+                    int h = Character.digit(ler(), 16);
+                    if (h < 0) {
+                        throw erro("escape \\u inválido");
+                    }
+                    valor = (valor << 4) | h;
+                }
+                return (char) valor;
+            default:
+                throw erro("escape inválido em texto");
+        }
+    }
+
+    private void esperar(Token esperado) throws IOException {
+        Token p = peek();
+        if (p != esperado) {
+            throw erro("esperava " + esperado + " mas encontrou " + p);
+        }
+        peeked = null;
+    }
+
+    private void empilhar(int escopo) {
+        if (tamanhoPilha == pilha.length) {
+            pilha = Arrays.copyOf(pilha, tamanhoPilha * 2);
+        }
+        pilha[tamanhoPilha++] = escopo;
+    }
+
+    private int proximoNaoBranco() throws IOException {
+        while (true) {
+            int c = ler();
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+    }
+
+    private int ler() throws IOException {
+        if (pos == limite && !preencher()) {
+            return -1;
+        }
+        return buf[pos++];
+    }
+
+    private boolean preencher() throws IOException {
+        int lidos = in.read(buf, 0, buf.length);
+        if (lidos <= 0) {
+            pos = 0;
+            limite = 0;
+            return false;
+        }
+        consumidos += lidos;
+        pos = 0;
+        limite = lidos;
+        return true;
+    }
+}
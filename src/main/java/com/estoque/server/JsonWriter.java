@@ -0,0 +1,320 @@
+package com.estoque.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Escritor de JSON em streaming que codifica UTF-8 direto no OutputStream,
+ * sem montar Strings intermediárias por linha.
+ *
+ * Controla sozinho as vírgulas entre valores, então os handlers só chamam
+ * beginObject/name/value/endObject na ordem do documento.
+ */
+public final class JsonWriter implements Closeable {
+
+    @FunctionalInterface
+    public interface ElementWriter<T> {
+        void write(JsonWriter w, T item) throws IOException;
+    }
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes();
+
+    private final OutputStream out;
+    private final byte[] buf;
+    private int pos;
+
+    // precisaVirgula[n] indica se o próximo valor no nível n deve ser precedido de ','
+    private boolean[] precisaVirgula = new boolean[16];
+    private int nivel;
+    private boolean aposNome;
+
+    public JsonWriter(OutputStream out) {
+        this(out, 8192);
+    }
+
+    public JsonWriter(OutputStream out, int tamanhoBuffer) {
+        this.out = out;
+        this.buf = new byte[Math.max(64, tamanhoBuffer)];
+    }
+
+    // ==================== ESTRUTURA ====================
+
+    public JsonWriter beginObject() throws IOException {
+        antesDoValor();
+        writeByte('{');
+        abrirNivel();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        nivel--;
+        writeByte('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        antesDoValor();
+        writeByte('[');
+        abrirNivel();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        nivel--;
+        writeByte(']');
+        return this;
+    }
+
+    public JsonWriter name(String nome) throws IOException {
+        if (precisaVirgula[nivel]) {
+            writeByte(',');
+        }
+        precisaVirgula[nivel] = true;
+        writeString(nome);
+        writeByte(':');
+        aposNome = true;
+        return this;
+    }
+
+    /**
+     * Termina o documento atual com '\n' para começar outro em seguida (NDJSON).
+     */
+    public JsonWriter endLine() throws IOException {
+        if (nivel != 0) {
+            throw new IllegalStateException("endLine dentro de objeto ou array");
+        }
+        writeByte('\n');
+        precisaVirgula[0] = false;
+        return this;
+    }
+
+    public <T> JsonWriter array(Iterable<T> itens, ElementWriter<? super T> elemento) throws IOException {
+        beginArray();
+        for (T item : itens) {
+            elemento.write(this, item);
+        }
+        return endArray();
+    }
+
+    // ==================== VALORES ====================
+
+    public JsonWriter value(String valor) throws IOException {
+        if (valor == null) {
+            return nullValue();
+        }
+        antesDoValor();
+        writeString(valor);
+        return this;
+    }
+
+    public JsonWriter value(long valor) throws IOException {
+        antesDoValor();
+        writeLong(valor);
+        return this;
+    }
+
+    public JsonWriter value(Long valor) throws IOException {
+        return valor == null ? nullValue() : value(valor.longValue());
+    }
+
+    public JsonWriter value(BigDecimal valor) throws IOException {
+        if (valor == null) {
+            return nullValue();
+        }
+        antesDoValor();
+        writeAscii(valor.toPlainString());
+        return this;
+    }
+
+    public JsonWriter value(boolean valor) throws IOException {
+        antesDoValor();
+        writeBytes(valor ? TRUE : FALSE);
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        antesDoValor();
+        writeBytes(NULL);
+        return this;
+    }
+
+    public void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+        out.close();
+    }
+
+    // ==================== CODIFICAÇÃO ====================
+
+    private void antesDoValor() throws IOException {
+        if (aposNome) {
+            aposNome = false;
+            return;
+        }
+        if (precisaVirgula[nivel]) {
+            writeByte(',');
+        }
+        precisaVirgula[nivel] = true;
+    }
+
+    private void abrirNivel() {
+        nivel++;
+        if (nivel == precisaVirgula.length) {
+            precisaVirgula = Arrays.copyOf(precisaVirgula, nivel * 2);
+        }
+        precisaVirgula[nivel] = false;
+    }
+
+    private void writeString(String s) throws IOException {
+        writeByte('"');
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    writeByte(c);
+                } else {
+                    writeEscape(c);
+                }
+            } else if (c < 0x800) {
+                garantir(2);
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                garantir(4);
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Surrogate órfão não é UTF-8 válido: troca por U+FFFD
+                writeUnicodeEscape((char) 0xFFFD);
+            } else if (c == 0x2028 || c == 0x2029) {
+                // Separadores de linha Unicode quebram JSON embutido em JavaScript
+                writeUnicodeEscape(c);
+            } else {
+                garantir(3);
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscape(char c) throws IOException {
+        switch (c) {
+            case '"' -> writeTwo('\\', '"');
+            case '\\' -> writeTwo('\\', '\\');
+            case '\n' -> writeTwo('\\', 'n');
+            case '\r' -> writeTwo('\\', 'r');
+            case '\t' -> writeTwo('\\', 't');
+            case '\b' -> writeTwo('\\', 'b');
+            case '\f' -> writeTwo('\\', 'f');
+            default -> writeUnicodeEscape(c);
+        }
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        garantir(6);
+        buf[pos++] = '\\';
+        buf[pos++] = 'u';
+        buf[pos++] = HEX[(c >> 12) & 0xF];
+        buf[pos++] = HEX[(c >> 8) & 0xF];
+        buf[pos++] = HEX[(c >> 4) & 0xF];
+        buf[pos++] = HEX[c & 0xF];
+    }
+
+    private void writeLong(long v) throws IOException {
+        if (v == Long.MIN_VALUE) {
+            writeBytes(MIN_LONG);
+            return;
+        }
+        garantir(20);
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int inicio = pos;
+        do {
+            buf[pos++] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        // dígitos saíram ao contrário
+        for (int i = inicio, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    // Em pedaços do tamanho do buffer: toPlainString() de um BigDecimal pode ser maior que ele
+    private void writeAscii(String s) throws IOException {
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            if (pos == buf.length) {
+                descarregar();
+            }
+            int fim = Math.min(len, i + buf.length - pos);
+            while (i < fim) {
+                buf[pos++] = (byte) s.charAt(i++);
+            }
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buf.length) {
+            descarregar();
+            out.write(bytes);
+            return;
+        }
+        garantir(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void writeTwo(char a, char b) throws IOException {
+        garantir(2);
+        buf[pos++] = (byte) a;
+        buf[pos++] = (byte) b;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (pos == buf.length) {
+            descarregar();
+        }
+        buf[pos++] = (byte) b;
+    }
+
+    private void garantir(int n) throws IOException {
+        if (pos + n > buf.length) {
+            descarregar();
+        }
+    }
+
+    private void descarregar() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+}
@@ -0,0 +1,76 @@
+package com.estoque.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limita o número de requisições em processamento ao mesmo tempo.
+ *
+ * Quando não há vaga a requisição é recusada na hora com 503 + Retry-After,
+ * para o balanceador tentar outra instância em vez de enfileirar.
+ */
+public class LimitadorConcorrencia extends Filter {
+
+    // Requisição que o executor não conseguiu aceitar: responde 503 sem disputar vaga
+    private static final ThreadLocal<Boolean> RECUSADA = new ThreadLocal<>();
+
+    private final Semaphore vagas;
+    private final int limite;
+    private final int retryAfterSegundos;
+
+    public LimitadorConcorrencia(int limite, int retryAfterSegundos) {
+        this.vagas = new Semaphore(limite);
+        this.limite = limite;
+        this.retryAfterSegundos = retryAfterSegundos;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (RECUSADA.get() != null || !vagas.tryAcquire()) {
+            try {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSegundos));
+                HttpApiServer.sendError(exchange, 503, "Servidor sobrecarregado, tente novamente");
+            } finally {
+                exchange.close();
+            }
+            return;
+        }
+
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            vagas.release();
+        }
+    }
+
+    /**
+     * Executa a tarefa do servidor de forma que a requisição seja recusada com 503
+     * ao passar pelo limitador.
+     */
+    public static Runnable recusando(Runnable tarefa) {
+        return () -> {
+            RECUSADA.set(Boolean.TRUE);
+            try {
+                tarefa.run();
+            } finally {
+                RECUSADA.remove();
+            }
+        };
+    }
+
+    public int getEmUso() {
+        return limite - vagas.availablePermits();
+    }
+
+    public int getLimite() {
+        return limite;
+    }
+
+    @Override
+    public String description() {
+        return "Limita requisições simultâneas a " + limite;
+    }
+}
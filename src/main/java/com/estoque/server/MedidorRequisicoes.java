@@ -0,0 +1,49 @@
+package com.estoque.server;
+
+import com.estoque.config.Metricas;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Registra em Metricas a duração e o status de cada requisição, por rota e método.
+ *
+ * A rota é o modelo registrado no Roteador ("/api/produtos/{id}"), para que
+ * /api/produtos/1 e /api/produtos/2 caiam na mesma série. Caminhos sem rota vão
+ * todos para a série "nao_encontrada": o caminho vem do cliente e, como rótulo,
+ * criaria uma série nova por URL inventada.
+ */
+public class MedidorRequisicoes extends Filter {
+
+    private static final String NAO_ENCONTRADA = "nao_encontrada";
+    // O método também vem do cliente: fora destes, um rótulo só
+    private static final Set<String> METODOS = Set.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS");
+
+    private final Roteador roteador;
+
+    public MedidorRequisicoes(Roteador roteador) {
+        this.roteador = roteador;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            // -1 = o handler lançou exceção sem responder; o JDK devolve 500
+            int status = exchange.getResponseCode();
+            String modelo = roteador != null ? roteador.modelo(exchange.getRequestURI().getPath()) : null;
+            String metodo = METODOS.contains(exchange.getRequestMethod()) ? exchange.getRequestMethod() : "outro";
+            Metricas.requisicao(modelo != null ? modelo : NAO_ENCONTRADA, metodo,
+                    status > 0 ? status : 500, System.nanoTime() - inicio);
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Mede latência e status por rota";
+    }
+}
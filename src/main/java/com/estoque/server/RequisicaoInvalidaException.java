@@ -0,0 +1,15 @@
+package com.estoque.server;
+
+/**
+ * Parâmetro ou corpo de requisição inválido; vira resposta 400.
+ */
+public class RequisicaoInvalidaException extends RuntimeException {
+
+    public RequisicaoInvalidaException(String message) {
+        super(message);
+    }
+
+    public RequisicaoInvalidaException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
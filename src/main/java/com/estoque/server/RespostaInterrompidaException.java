@@ -0,0 +1,13 @@
+package com.estoque.server;
+
+/**
+ * Falha depois que a resposta já começou a ser enviada em chunks. Não dá mais para
+ * trocar por uma resposta de erro: o handler deixa a exceção chegar ao HttpServer,
+ * que fecha a conexão sem o chunk final, e o cliente percebe o corpo incompleto.
+ */
+class RespostaInterrompidaException extends RuntimeException {
+
+    RespostaInterrompidaException(Throwable cause) {
+        super(cause);
+    }
+}
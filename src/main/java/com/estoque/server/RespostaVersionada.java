@@ -0,0 +1,69 @@
+package com.estoque.server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Último corpo JSON gerado por um endpoint, guardado junto com o token de
+ * versão (ETag) e com as cópias já comprimidas em cada codificação pedida.
+ *
+ * Enquanto a versão não muda, requisições sem If-None-Match recebem os mesmos
+ * bytes sem consultar, serializar ou comprimir de novo.
+ */
+final class RespostaVersionada {
+
+    private record Corpo(String versao, byte[] json, ConcurrentHashMap<String, byte[]> comprimidos) {
+
+        byte[] em(String codificacao) {
+            return comprimidos.computeIfAbsent(codificacao, c -> Compressao.comprimir(json, c));
+        }
+    }
+
+    private volatile Corpo atual;
+
+    /**
+     * Envia o corpo guardado se ele for desta versão. Retorna false se for preciso gerar outro.
+     */
+    boolean reaproveitar(HttpExchange exchange, String versao) throws IOException {
+        Corpo corpo = atual;
+        if (corpo == null || !corpo.versao().equals(versao)) {
+            return false;
+        }
+        enviar(exchange, corpo);
+        return true;
+    }
+
+    /**
+     * Gera o corpo, guarda para a versão informada e envia. A versão deve ter sido
+     * lida antes dos dados, então o corpo guardado nunca é mais antigo que ela.
+     */
+    void enviar(HttpExchange exchange, String versao, HttpApiServer.CorpoJson gerador) throws IOException {
+        Corpo corpo = new Corpo(versao, HttpApiServer.codificarJson(gerador), new ConcurrentHashMap<>());
+        atual = corpo;
+        enviar(exchange, corpo);
+    }
+
+    private static void enviar(HttpExchange exchange, Corpo corpo) throws IOException {
+        String codificacao = Compressao.negociar(exchange);
+        byte[] bytes = corpo.json();
+        if (codificacao != null && bytes.length >= Compressao.TAMANHO_MINIMO) {
+            bytes = corpo.em(codificacao);
+            exchange.getResponseHeaders().set("Content-Encoding", codificacao);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream os = exchange.getResponseBody();
+        try {
+            os.write(bytes);
+        } catch (IOException e) {
+            // Headers já enviados: não há como trocar por uma resposta de erro
+            throw new RespostaInterrompidaException(e);
+        }
+        os.close();
+    }
+}
@@ -0,0 +1,235 @@
+package com.estoque.server;
+
+import com.estoque.service.ChaveIdempotenciaEmConflitoException;
+import com.estoque.service.ChaveIdempotenciaReutilizadaException;
+import com.estoque.service.EstoqueInsuficienteException;
+import com.estoque.service.RecursoNaoEncontradoException;
+import com.estoque.service.SobrecargaException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Despacha as requisições por método e caminho para as rotas registradas.
+ *
+ * Os modelos ("/api/produtos/{id}") são montados em uma árvore de segmentos na
+ * inicialização. A busca percorre o caminho por índices, sem split, regex nem
+ * substring: segmentos fixos têm prioridade sobre parâmetros, e parâmetros só
+ * aceitam ids numéricos (/api/produtos/abc não casa com nenhuma rota). Caminho
+ * sem rota responde 404; rota sem o método pedido, 405 com Allow.
+ *
+ * Também centraliza CORS, OPTIONS e a conversão das exceções em status HTTP.
+ */
+public class Roteador implements HttpHandler {
+
+    @FunctionalInterface
+    public interface Rota {
+        void atender(HttpExchange exchange, Parametros parametros) throws IOException;
+    }
+
+    /**
+     * Valores dos parâmetros do caminho, já convertidos.
+     */
+    public static final class Parametros {
+        private static final Parametros NENHUM = new Parametros(new String[0], new long[0]);
+
+        private final String[] nomes;
+        private final long[] valores;
+
+        private Parametros(String[] nomes, long[] valores) {
+            this.nomes = nomes;
+            this.valores = valores;
+        }
+
+        public long id(String nome) {
+            for (int i = 0; i < nomes.length; i++) {
+                if (nomes[i].equals(nome)) {
+                    return valores[i];
+                }
+            }
+            throw new IllegalArgumentException("Parâmetro não declarado na rota: " + nome);
+        }
+    }
+
+    private static final class No {
+        String[] literais = new String[0];
+        No[] filhos = new No[0];
+        No parametro;
+
+        // Preenchidos quando algum modelo termina neste nó
+        String modelo;
+        String[] nomes;
+        final Map<String, Rota> porMetodo = new HashMap<>();
+        String permitidos;
+
+        No filho(String literal) {
+            for (int i = 0; i < literais.length; i++) {
+                if (literais[i].equals(literal)) {
+                    return filhos[i];
+                }
+            }
+            literais = Arrays.copyOf(literais, literais.length + 1);
+            filhos = Arrays.copyOf(filhos, filhos.length + 1);
+            literais[literais.length - 1] = literal;
+            return filhos[filhos.length - 1] = new No();
+        }
+    }
+
+    private final No raiz = new No();
+    private int maxParametros;
+
+    /**
+     * Registra a rota; segmentos entre chaves ("{id}") são parâmetros numéricos.
+     */
+    public Roteador adicionar(String metodo, String modelo, Rota rota) {
+        No no = raiz;
+        String[] nomes = new String[0];
+        for (String segmento : modelo.split("/")) {
+            if (segmento.isEmpty()) {
+                continue;
+            }
+            if (segmento.startsWith("{") && segmento.endsWith("}")) {
+                if (no.parametro == null) {
+                    no.parametro = new No();
+                }
+                no = no.parametro;
+                nomes = Arrays.copyOf(nomes, nomes.length + 1);
+                nomes[nomes.length - 1] = segmento.substring(1, segmento.length() - 1);
+            } else {
+                no = no.filho(segmento);
+            }
+        }
+
+        if (no.modelo != null && !Arrays.equals(no.nomes, nomes)) {
+            throw new IllegalStateException("Rotas " + no.modelo + " e " + modelo + " com parâmetros diferentes");
+        }
+        if (no.porMetodo.putIfAbsent(metodo, rota) != null) {
+            throw new IllegalStateException("Rota duplicada: " + metodo + " " + modelo);
+        }
+        no.modelo = modelo;
+        no.nomes = nomes;
+        no.permitidos = String.join(", ", new TreeSet<>(no.porMetodo.keySet())) + ", OPTIONS";
+        maxParametros = Math.max(maxParametros, nomes.length);
+        return this;
+    }
+
+    public Roteador adicionar(String metodo, String modelo, HttpHandler handler) {
+        return adicionar(metodo, modelo, (exchange, parametros) -> handler.handle(exchange));
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String caminho = exchange.getRequestURI().getPath();
+        long[] valores = maxParametros > 0 ? new long[maxParametros] : null;
+        No no = buscar(raiz, caminho, 0, valores, 0);
+        HttpApiServer.addCorsHeaders(exchange.getResponseHeaders());
+
+        if (no == null) {
+            HttpApiServer.sendError(exchange, 404, "Recurso não encontrado: " + caminho);
+            return;
+        }
+
+        String metodo = exchange.getRequestMethod();
+        if ("OPTIONS".equals(metodo)) {
+            exchange.getResponseHeaders().set("Allow", no.permitidos);
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        Rota rota = no.porMetodo.get(metodo);
+        if (rota == null) {
+            exchange.getResponseHeaders().set("Allow", no.permitidos);
+            HttpApiServer.sendError(exchange, 405, "Método " + metodo + " não permitido em " + no.modelo);
+            return;
+        }
+
+        Parametros parametros = no.nomes.length == 0
+                ? Parametros.NENHUM
+                : new Parametros(no.nomes, Arrays.copyOf(valores, no.nomes.length));
+        try {
+            rota.atender(exchange, parametros);
+        } catch (RespostaInterrompidaException e) {
+            throw e;
+        } catch (RequisicaoInvalidaException e) {
+            HttpApiServer.sendError(exchange, 400, e.getMessage());
+        } catch (RecursoNaoEncontradoException e) {
+            HttpApiServer.sendError(exchange, 404, e.getMessage());
+        } catch (EstoqueInsuficienteException | ChaveIdempotenciaEmConflitoException e) {
+            HttpApiServer.sendError(exchange, 409, e.getMessage());
+        } catch (ChaveIdempotenciaReutilizadaException e) {
+            HttpApiServer.sendError(exchange, 422, e.getMessage());
+        } catch (SobrecargaException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            HttpApiServer.sendError(exchange, 503, e.getMessage());
+        } catch (Exception e) {
+            // Uma linha por erro; os repositories embrulham a SQLException, então vai a causa junto
+            System.err.println("Erro em " + metodo + " " + no.modelo + ": " + e
+                    + (e.getCause() != null ? " (causa: " + e.getCause() + ")" : ""));
+            HttpApiServer.sendError(exchange, 500, "Erro interno no servidor");
+        }
+    }
+
+    /**
+     * Modelo da rota que atende o caminho, ou null; usado como rótulo nas métricas.
+     */
+    public String modelo(String caminho) {
+        No no = buscar(raiz, caminho, 0, null, 0);
+        return no != null ? no.modelo : null;
+    }
+
+    // Nó com rotas que casa com caminho[inicio..]; valores (se houver) recebe os parâmetros na ordem do modelo
+    private static No buscar(No no, String caminho, int inicio, long[] valores, int nParametros) {
+        int tamanho = caminho.length();
+        while (inicio < tamanho && caminho.charAt(inicio) == '/') {
+            inicio++;
+        }
+        if (inicio == tamanho) {
+            return no.modelo != null ? no : null;
+        }
+
+        int fim = caminho.indexOf('/', inicio);
+        if (fim < 0) {
+            fim = tamanho;
+        }
+        int comprimento = fim - inicio;
+
+        for (int i = 0; i < no.literais.length; i++) {
+            String literal = no.literais[i];
+            if (literal.length() == comprimento && caminho.regionMatches(inicio, literal, 0, comprimento)) {
+                No encontrado = buscar(no.filhos[i], caminho, fim, valores, nParametros);
+                if (encontrado != null) {
+                    return encontrado;
+                }
+                break;
+            }
+        }
+
+        if (no.parametro != null) {
+            long valor = numero(caminho, inicio, fim);
+            if (valor >= 0) {
+                if (valores != null) {
+                    valores[nParametros] = valor;
+                }
+                return buscar(no.parametro, caminho, fim, valores, nParametros + 1);
+            }
+        }
+        return null;
+    }
+
+    // Inteiro não negativo em caminho[inicio..fim); -1 se não for número ou não couber em long
+    private static long numero(String caminho, int inicio, int fim) {
+        long valor = 0;
+        for (int i = inicio; i < fim; i++) {
+            int digito = caminho.charAt(i) - '0';
+            if (digito < 0 || digito > 9 || valor > (Long.MAX_VALUE - digito) / 10) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+}
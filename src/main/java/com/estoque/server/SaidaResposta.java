@@ -0,0 +1,112 @@
+package com.estoque.server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream do corpo da resposta que adia o envio dos cabeçalhos.
+ *
+ * Se o corpo inteiro couber na primeira escrita ele sai com Content-Length
+ * exato; caso contrário a resposta passa a ser enviada em chunks. Com uma
+ * codificação negociada, corpos a partir de Compressao.TAMANHO_MINIMO saem
+ * comprimidos em streaming.
+ */
+class SaidaResposta extends OutputStream {
+
+    private final HttpExchange exchange;
+    private final int statusCode;
+    private final String codificacao;
+    private OutputStream corpo;
+    private byte[] pendente;
+    private boolean fechada;
+
+    SaidaResposta(HttpExchange exchange, int statusCode) {
+        this(exchange, statusCode, null);
+    }
+
+    /**
+     * @param codificacao resultado de Compressao.negociar, ou null para nunca comprimir
+     */
+    SaidaResposta(HttpExchange exchange, int statusCode, String codificacao) {
+        this.exchange = exchange;
+        this.statusCode = statusCode;
+        this.codificacao = codificacao;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        if (corpo == null && pendente == null) {
+            // Primeira escrita: guarda até saber se haverá mais
+            pendente = new byte[len];
+            System.arraycopy(b, off, pendente, 0, len);
+            return;
+        }
+        if (corpo == null) {
+            iniciarChunked();
+        }
+        corpo.write(b, off, len);
+    }
+
+    private void iniciarChunked() throws IOException {
+        if (codificacao != null) {
+            exchange.getResponseHeaders().set("Content-Encoding", codificacao);
+            exchange.sendResponseHeaders(statusCode, 0);
+            corpo = Compressao.envolver(exchange.getResponseBody(), codificacao);
+        } else {
+            exchange.sendResponseHeaders(statusCode, 0);
+            corpo = exchange.getResponseBody();
+        }
+        corpo.write(pendente);
+        pendente = null;
+    }
+
+    /**
+     * true depois que os cabeçalhos foram enviados; a partir daí um erro não vira mais outra resposta.
+     */
+    boolean iniciada() {
+        return corpo != null;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (corpo != null) {
+            corpo.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fechada) {
+            return;
+        }
+        fechada = true;
+        if (corpo == null) {
+            if (pendente == null) {
+                exchange.sendResponseHeaders(statusCode, -1);
+                exchange.getResponseBody().close();
+                return;
+            }
+            if (codificacao != null && pendente.length >= Compressao.TAMANHO_MINIMO) {
+                // Coube em uma escrita: comprime de uma vez e manda com Content-Length
+                byte[] comprimido = Compressao.comprimir(pendente, codificacao);
+                exchange.getResponseHeaders().set("Content-Encoding", codificacao);
+                pendente = comprimido;
+            }
+            exchange.sendResponseHeaders(statusCode, pendente.length);
+            corpo = exchange.getResponseBody();
+            corpo.write(pendente);
+            pendente = null;
+        }
+        corpo.close();
+    }
+}
@@ -0,0 +1,343 @@
+package com.estoque.service;
+
+import com.estoque.model.Categoria;
+import com.estoque.model.Produto;
+import com.estoque.repository.CategoriaCache;
+import com.estoque.repository.ProdutoRepository;
+import com.estoque.repository.TotalCategoria;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agregados do estoque mantidos em memória: valor total, quantidade e valor por
+ * categoria e o conjunto de produtos abaixo do mínimo.
+ *
+ * Carregados uma vez na inicialização e atualizados em O(1) pelos serviços a cada
+ * escrita confirmada. Escritas concorrentes no mesmo produto podem chegar fora de
+ * ordem, por isso uma reconciliação periódica recarrega tudo do banco.
+ */
+public class AgregadosEstoque {
+
+    private static final String SEM_CATEGORIA = "Sem categoria";
+    private static final int MAX_RELEITURAS = 5;
+
+    // Estado de um produto que entra nos agregados
+    private record Linha(Long id, String nome, BigDecimal preco, int quantidade, int minima,
+                         Long categoriaId) {
+
+        BigDecimal valor() {
+            return preco.multiply(BigDecimal.valueOf(quantidade));
+        }
+
+        boolean abaixoDoMinimo() {
+            return quantidade < minima;
+        }
+
+        Linha comQuantidade(int novaQuantidade) {
+            return new Linha(id, nome, preco, novaQuantidade, minima, categoriaId);
+        }
+    }
+
+    private static final class Totais {
+        long quantidade;
+        BigDecimal valor = BigDecimal.ZERO;
+    }
+
+    private static final Comparator<Linha> POR_NOME = Comparator
+            .comparing(Linha::nome, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Linha::id);
+
+    private final ProdutoRepository produtoRepository;
+    private final CategoriaCache categorias;
+
+    // Todo o estado abaixo é protegido por this
+    private Map<Long, Linha> linhas = new HashMap<>();
+    private Map<Long, Totais> porCategoria = new HashMap<>();   // chave null = sem categoria
+    private TreeSet<Linha> abaixoDoMinimo = new TreeSet<>(POR_NOME);
+    private BigDecimal valorTotal = BigDecimal.ZERO;
+    private long geracao;
+    // Produtos notificados desde o início da recarga em andamento (null = nenhuma recarga)
+    private Set<Long> alteradosNaRecarga;
+
+    // Uma recarga por vez (reconciliação periódica e reajuste de preços)
+    private final Object recarga = new Object();
+    private ScheduledExecutorService reconciliacao;
+
+    public AgregadosEstoque(ProdutoRepository produtoRepository, CategoriaCache categorias) {
+        this.produtoRepository = produtoRepository;
+        this.categorias = categorias;
+    }
+
+    // ==================== CARGA E RECONCILIAÇÃO ====================
+
+    /**
+     * Recarrega todos os produtos do banco e substitui os agregados.
+     * Retorna quantos produtos estavam divergentes em relação ao estado anterior.
+     *
+     * Uma notificação que chega durante a leitura pode ou não estar no que foi lido
+     * (depende de o commit ter sido antes ou depois do início da consulta): aplicar
+     * o delta de novo contaria duas vezes, descartá-lo perderia a escrita. Por isso
+     * esses produtos são relidos do banco depois da troca, até uma releitura
+     * terminar sem escritas concorrentes neles.
+     */
+    public int recarregar() {
+        synchronized (recarga) {
+            synchronized (this) {
+                alteradosNaRecarga = new HashSet<>();
+            }
+            try {
+                int divergentes = substituirTudo(produtoRepository.buscarTodos());
+                reler();
+                return divergentes;
+            } finally {
+                synchronized (this) {
+                    alteradosNaRecarga = null;
+                }
+            }
+        }
+    }
+
+    private int substituirTudo(List<Produto> produtos) {
+        Map<Long, Linha> novasLinhas = new HashMap<>(produtos.size() * 4 / 3 + 1);
+        Map<Long, Totais> novoPorCategoria = new HashMap<>();
+        TreeSet<Linha> novoAbaixo = new TreeSet<>(POR_NOME);
+        BigDecimal novoTotal = BigDecimal.ZERO;
+
+        for (Produto p : produtos) {
+            Linha linha = paraLinha(p);
+            novasLinhas.put(linha.id(), linha);
+
+            BigDecimal valor = linha.valor();
+            novoTotal = novoTotal.add(valor);
+            Totais t = novoPorCategoria.computeIfAbsent(linha.categoriaId(), k -> new Totais());
+            t.quantidade++;
+            t.valor = t.valor.add(valor);
+            if (linha.abaixoDoMinimo()) {
+                novoAbaixo.add(linha);
+            }
+        }
+
+        synchronized (this) {
+            int divergentes = 0;
+            if (geracao > 0) {
+                for (Linha linha : novasLinhas.values()) {
+                    if (!linha.equals(linhas.get(linha.id()))) {
+                        divergentes++;
+                    }
+                }
+                for (Long id : linhas.keySet()) {
+                    if (!novasLinhas.containsKey(id)) {
+                        divergentes++;
+                    }
+                }
+            }
+
+            linhas = novasLinhas;
+            porCategoria = novoPorCategoria;
+            abaixoDoMinimo = novoAbaixo;
+            valorTotal = novoTotal;
+            geracao++;
+            return divergentes;
+        }
+    }
+
+    // Relê com o estado absoluto os produtos notificados desde a última leitura
+    private void reler() {
+        for (int i = 0; i < MAX_RELEITURAS; i++) {
+            Set<Long> ids;
+            synchronized (this) {
+                ids = alteradosNaRecarga;
+                if (ids.isEmpty()) {
+                    return;
+                }
+                alteradosNaRecarga = new HashSet<>();
+            }
+
+            Map<Long, Produto> atuais = new HashMap<>();
+            for (Produto p : produtoRepository.buscarPorIds(ids)) {
+                atuais.put(p.getId(), p);
+            }
+            synchronized (this) {
+                for (Long id : ids) {
+                    Produto p = atuais.get(id);
+                    substituir(linhas.get(id), p != null ? paraLinha(p) : null);
+                }
+            }
+        }
+
+        int restantes;
+        synchronized (this) {
+            restantes = alteradosNaRecarga.size();
+        }
+        if (restantes > 0) {
+            System.err.println("Agregados: " + restantes + " produto(s) alterado(s) durante todas as releituras;"
+                    + " a próxima reconciliação corrige");
+        }
+    }
+
+    /**
+     * Agenda a reconciliação com o banco a cada intervaloSeg segundos (0 = desligada).
+     */
+    public synchronized void iniciarReconciliacao(long intervaloSeg) {
+        if (intervaloSeg <= 0 || reconciliacao != null) {
+            return;
+        }
+        reconciliacao = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "agregados-reconciliacao");
+            t.setDaemon(true);
+            return t;
+        });
+        reconciliacao.scheduleWithFixedDelay(() -> {
+            try {
+                int divergentes = recarregar();
+                if (divergentes > 0) {
+                    System.out.println("✓ Agregados reconciliados: " + divergentes + " produto(s) corrigido(s)");
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Falha ao reconciliar agregados: " + e.getMessage());
+            }
+        }, intervaloSeg, intervaloSeg, TimeUnit.SECONDS);
+    }
+
+    public synchronized void parar() {
+        if (reconciliacao != null) {
+            reconciliacao.shutdownNow();
+            reconciliacao = null;
+        }
+    }
+
+    // ==================== ATUALIZAÇÕES (chamadas após o commit) ====================
+
+    /**
+     * Produto criado ou alterado; recebe o estado lido do banco.
+     */
+    public synchronized void produtoSalvo(Produto produto) {
+        Linha nova = paraLinha(produto);
+        marcar(nova.id());
+        substituir(linhas.get(nova.id()), nova);
+    }
+
+    public synchronized void produtoRemovido(Long id) {
+        marcar(id);
+        substituir(linhas.get(id), null);
+    }
+
+    /**
+     * Aplica a variação de estoque de um produto. Usa o delta, e não o saldo final,
+     * para que movimentações concorrentes possam ser aplicadas em qualquer ordem.
+     */
+    public synchronized void estoqueAlterado(Long produtoId, int delta) {
+        marcar(produtoId);
+        Linha atual = linhas.get(produtoId);
+        if (atual == null || delta == 0) {
+            return;
+        }
+        substituir(atual, atual.comQuantidade(atual.quantidade() + delta));
+    }
+
+    public synchronized void estoquesAlterados(Map<Long, Integer> deltas) {
+        for (Map.Entry<Long, Integer> e : deltas.entrySet()) {
+            estoqueAlterado(e.getKey(), e.getValue());
+        }
+    }
+
+    // Durante uma recarga, o produto precisa ser relido depois da troca (ver recarregar)
+    private void marcar(Long id) {
+        if (alteradosNaRecarga != null) {
+            alteradosNaRecarga.add(id);
+        }
+    }
+
+    private void substituir(Linha antiga, Linha nova) {
+        if (antiga != null) {
+            BigDecimal valor = antiga.valor();
+            valorTotal = valorTotal.subtract(valor);
+            Totais t = porCategoria.get(antiga.categoriaId());
+            t.quantidade--;
+            t.valor = t.valor.subtract(valor);
+            if (t.quantidade == 0) {
+                porCategoria.remove(antiga.categoriaId());
+            }
+            abaixoDoMinimo.remove(antiga);
+            linhas.remove(antiga.id());
+        }
+        if (nova != null) {
+            BigDecimal valor = nova.valor();
+            valorTotal = valorTotal.add(valor);
+            Totais t = porCategoria.computeIfAbsent(nova.categoriaId(), k -> new Totais());
+            t.quantidade++;
+            t.valor = t.valor.add(valor);
+            if (nova.abaixoDoMinimo()) {
+                abaixoDoMinimo.add(nova);
+            }
+            linhas.put(nova.id(), nova);
+        }
+        geracao++;
+    }
+
+    // ==================== CONSULTAS ====================
+
+    public synchronized BigDecimal getValorTotal() {
+        return valorTotal;
+    }
+
+    // Agrupado pelo nome atual da categoria (do cache), como no relatório em SQL
+    public synchronized List<TotalCategoria> getTotaisPorCategoria() {
+        Map<Long, Categoria> dicionario = categorias.dicionario();
+        Map<String, Totais> porNome = new TreeMap<>();
+        for (Map.Entry<Long, Totais> e : porCategoria.entrySet()) {
+            Categoria c = e.getKey() != null ? dicionario.get(e.getKey()) : null;
+            String nome = c != null ? c.getNome() : SEM_CATEGORIA;
+            Totais t = porNome.computeIfAbsent(nome, k -> new Totais());
+            t.quantidade += e.getValue().quantidade;
+            t.valor = t.valor.add(e.getValue().valor);
+        }
+
+        List<TotalCategoria> totais = new ArrayList<>(porNome.size());
+        porNome.forEach((nome, t) -> totais.add(new TotalCategoria(nome, t.quantidade, t.valor)));
+        return totais;
+    }
+
+    public synchronized List<Produto> getAbaixoDoMinimo() {
+        List<Produto> produtos = new ArrayList<>(abaixoDoMinimo.size());
+        for (Linha linha : abaixoDoMinimo) {
+            Produto p = new Produto();
+            p.setId(linha.id());
+            p.setNome(linha.nome());
+            p.setPrecoUnitario(linha.preco());
+            p.setQuantidadeEstoque(linha.quantidade());
+            p.setQuantidadeMinima(linha.minima());
+            produtos.add(p);
+        }
+        return produtos;
+    }
+
+    // Incrementada a cada alteração dos agregados
+    public synchronized long getGeracao() {
+        return geracao;
+    }
+
+    // Token para ETag: geração dos agregados + versão dos nomes de categoria
+    public String versao() {
+        return "a" + getGeracao() + ".c" + categorias.versao();
+    }
+
+    private static Linha paraLinha(Produto p) {
+        Categoria c = p.getCategoria();
+        BigDecimal preco = p.getPrecoUnitario() != null ? p.getPrecoUnitario() : BigDecimal.ZERO;
+        return new Linha(p.getId(), p.getNome(), preco, p.getQuantidadeEstoque(),
+                p.getQuantidadeMinima(), c != null ? c.getId() : null);
+    }
+}
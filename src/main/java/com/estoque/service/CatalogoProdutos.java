@@ -0,0 +1,222 @@
+package com.estoque.service;
+
+import com.estoque.model.Produto;
+import com.estoque.repository.ProdutoRepository;
+
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cópia em memória do catálogo de produtos, ordenada por nome.
+ *
+ * Cada snapshot é um array imutável trocado atomicamente: leituras não travam
+ * nem vão ao banco. Criações, alterações e remoções feitas pela API geram um
+ * novo array (copy-on-write). Mudanças que não passam por aqui (movimentações,
+ * reajustes em massa) só marcam o snapshot como desatualizado; a primeira leitura
+ * após o limite de defasagem dispara a recarga em segundo plano.
+ */
+public class CatalogoProdutos {
+
+    /**
+     * Estado do catálogo em um instante. Os produtos são compartilhados entre
+     * requisições e não devem ser alterados.
+     */
+    public record Snapshot(List<Produto> produtos, long sequencia, long criadoEmNanos) {
+    }
+
+    private static final AtomicLong SEQUENCIAS = new AtomicLong();
+
+    private final ProdutoRepository produtoRepository;
+    private final long defasagemMaxNanos;
+    private final long tempoVidaMaxNanos;
+    private final Comparator<Produto> ordem;
+
+    private final AtomicReference<Produto[]> produtos = new AtomicReference<>();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    // Serializa recargas e copy-on-write; leitores só passam por ela na primeira carga
+    private final ReentrantLock escrita = new ReentrantLock();
+    private final AtomicLong alteracoes = new AtomicLong();
+    private final AtomicLong desatualizadoDesde = new AtomicLong();   // 0 = em dia
+
+    private final ExecutorService recarga = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "catalogo-recarga");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean recarregando = new AtomicBoolean();
+
+    /**
+     * @param defasagemMaxMs quanto tempo um snapshot marcado como desatualizado ainda é servido
+     * @param tempoVidaMaxS  idade máxima de qualquer snapshot, para pegar mudanças feitas direto no banco
+     */
+    public CatalogoProdutos(ProdutoRepository produtoRepository, long defasagemMaxMs, long tempoVidaMaxS) {
+        this.produtoRepository = produtoRepository;
+        this.defasagemMaxNanos = defasagemMaxMs * 1_000_000L;
+        this.tempoVidaMaxNanos = tempoVidaMaxS * 1_000_000_000L;
+
+        Collator collator = Collator.getInstance(Locale.forLanguageTag("pt-BR"));
+        collator.setStrength(Collator.SECONDARY);
+        this.ordem = Comparator
+                .comparing(Produto::getNome, Comparator.nullsFirst(collator::compare))
+                .thenComparing(Produto::getId);
+    }
+
+    public Snapshot atual() {
+        Snapshot atual = snapshot.get();
+        if (atual == null) {
+            escrita.lock();
+            try {
+                atual = snapshot.get();
+                return atual != null ? atual : recarregarTravado();
+            } finally {
+                escrita.unlock();
+            }
+        }
+
+        long agora = System.nanoTime();
+        long desde = desatualizadoDesde.get();
+        boolean vencido = (desde != 0 && agora - desde >= defasagemMaxNanos)
+                || (tempoVidaMaxNanos > 0 && agora - atual.criadoEmNanos() >= tempoVidaMaxNanos);
+
+        // A recarga roda em segundo plano; enquanto isso o snapshot anterior continua servindo
+        if (vencido && recarregando.compareAndSet(false, true)) {
+            try {
+                recarga.execute(() -> {
+                    try {
+                        recarregar();
+                    } catch (RuntimeException e) {
+                        System.err.println("Falha ao recarregar o catálogo: " + e.getMessage());
+                    } finally {
+                        recarregando.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                recarregando.set(false);
+            }
+        }
+        return atual;
+    }
+
+    /**
+     * Recarrega o catálogo do banco imediatamente.
+     */
+    public Snapshot recarregar() {
+        escrita.lock();
+        try {
+            return recarregarTravado();
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    private Snapshot recarregarTravado() {
+        long alteracoesAntes = alteracoes.get();
+
+        Produto[] carregados = produtoRepository.buscarTodos().toArray(new Produto[0]);
+        Arrays.sort(carregados, ordem);
+        Snapshot novo = publicar(carregados);
+
+        // Se algo mudou durante a carga o resultado pode não refletir essa mudança;
+        // a segunda conferência cobre uma marcação feita entre o teste e a limpeza
+        if (alteracoes.get() == alteracoesAntes) {
+            desatualizadoDesde.set(0);
+            if (alteracoes.get() != alteracoesAntes) {
+                desatualizadoDesde.compareAndSet(0, System.nanoTime());
+            }
+        }
+        return novo;
+    }
+
+    // ==================== ESCRITAS (chamadas após o commit) ====================
+
+    /**
+     * Insere ou substitui um produto com o estado lido do banco.
+     */
+    public void produtoSalvo(Produto produto) {
+        escrita.lock();
+        try {
+            alteracoes.incrementAndGet();
+            Produto[] atual = produtos.get();
+            if (atual == null) {
+                return;
+            }
+
+            int existente = indiceDe(atual, produto.getId());
+            Produto[] semAntigo = atual;
+            if (existente >= 0) {
+                semAntigo = new Produto[atual.length - 1];
+                System.arraycopy(atual, 0, semAntigo, 0, existente);
+                System.arraycopy(atual, existente + 1, semAntigo, existente, atual.length - existente - 1);
+            }
+
+            int posicao = Arrays.binarySearch(semAntigo, produto, ordem);
+            if (posicao < 0) {
+                posicao = -posicao - 1;
+            }
+            Produto[] novo = new Produto[semAntigo.length + 1];
+            System.arraycopy(semAntigo, 0, novo, 0, posicao);
+            novo[posicao] = produto;
+            System.arraycopy(semAntigo, posicao, novo, posicao + 1, semAntigo.length - posicao);
+            publicar(novo);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    public void produtoRemovido(Long id) {
+        escrita.lock();
+        try {
+            alteracoes.incrementAndGet();
+            Produto[] atual = produtos.get();
+            int indice = atual != null ? indiceDe(atual, id) : -1;
+            if (indice < 0) {
+                return;
+            }
+            Produto[] novo = new Produto[atual.length - 1];
+            System.arraycopy(atual, 0, novo, 0, indice);
+            System.arraycopy(atual, indice + 1, novo, indice, atual.length - indice - 1);
+            publicar(novo);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Algum produto mudou fora do copy-on-write (estoque, reajuste em massa).
+     * O snapshot atual continua valendo por até o limite de defasagem.
+     */
+    public void marcarDesatualizado() {
+        alteracoes.incrementAndGet();
+        desatualizadoDesde.compareAndSet(0, System.nanoTime());
+    }
+
+    private Snapshot publicar(Produto[] novos) {
+        produtos.set(novos);
+        Snapshot novo = new Snapshot(Collections.unmodifiableList(Arrays.asList(novos)),
+                SEQUENCIAS.incrementAndGet(), System.nanoTime());
+        snapshot.set(novo);
+        return novo;
+    }
+
+    // Busca linear: escritas são raras e o array está ordenado por nome, não por id
+    private static int indiceDe(Produto[] produtos, Long id) {
+        for (int i = 0; i < produtos.length; i++) {
+            if (produtos[i].getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,34 +1,65 @@
 package com.estoque.service;
 
 import com.estoque.model.Categoria;
+import com.estoque.repository.CategoriaCache;
 import com.estoque.repository.CategoriaRepository;
+import com.estoque.repository.ProdutoCache;
 
 import java.util.List;
 
 public class CategoriaService {
     private final CategoriaRepository categoriaRepository;
+    private final CategoriaCache cache;
+    private final CatalogoProdutos catalogo;   // null = listagem lida do banco
+    private final ProdutoCache produtos;       // null = sem cache de produtos por id
 
-    public CategoriaService(CategoriaRepository categoriaRepository) {
+    public CategoriaService(CategoriaRepository categoriaRepository, CategoriaCache cache,
+                            CatalogoProdutos catalogo, ProdutoCache produtos) {
         this.categoriaRepository = categoriaRepository;
+        this.cache = cache;
+        this.catalogo = catalogo;
+        this.produtos = produtos;
     }
 
     public Categoria criarCategoria(Categoria categoria) {
-        return categoriaRepository.salvar(categoria);
+        Categoria salva = categoriaRepository.salvar(categoria);
+        cache.invalidar();
+        return salva;
     }
 
     public Categoria atualizarCategoria(Categoria categoria) {
-        return categoriaRepository.salvar(categoria);
+        Categoria salva = categoriaRepository.salvar(categoria);
+        invalidar();
+        return salva;
     }
 
     public void removerCategoria(Long id) {
         categoriaRepository.remover(id);
+        invalidar();
     }
 
+    // Os produtos do catálogo e do cache por id guardam a instância antiga da categoria
+    private void invalidar() {
+        cache.invalidar();
+        if (catalogo != null) {
+            catalogo.marcarDesatualizado();
+        }
+        if (produtos != null) {
+            produtos.limpar();
+        }
+    }
+
+    // Listas e instâncias vêm do cache e são somente leitura
     public List<Categoria> listarCategorias() {
-        return categoriaRepository.buscarTodos();
+        return cache.buscarTodos();
+    }
+
+    public String versao() {
+        return "c" + cache.versao();
     }
 
+    // Instância do cache, somente leitura; null se não existir
     public Categoria buscarPorId(Long id) {
-        return categoriaRepository.buscarPorId(id);
+        return cache.buscarPorId(id);
     }
 }
@@ -0,0 +1,12 @@
+package com.estoque.service;
+
+/**
+ * Idempotency-Key disputada por outras requisições em todas as tentativas de
+ * gravação; vira resposta 409 e o cliente pode repetir.
+ */
+public class ChaveIdempotenciaEmConflitoException extends RuntimeException {
+
+    public ChaveIdempotenciaEmConflitoException(String chave) {
+        super("Idempotency-Key em uso por outra requisição, tente novamente: " + chave);
+    }
+}
@@ -0,0 +1,11 @@
+package com.estoque.service;
+
+/**
+ * Idempotency-Key já usada com outro conteúdo; vira resposta 422.
+ */
+public class ChaveIdempotenciaReutilizadaException extends RuntimeException {
+
+    public ChaveIdempotenciaReutilizadaException(String chave) {
+        super("Idempotency-Key já usada em outra movimentação: " + chave);
+    }
+}
@@ -0,0 +1,110 @@
+package com.estoque.service;
+
+import com.estoque.repository.IdempotenciaRepository;
+import com.estoque.repository.RespostaIdempotente;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Respostas já enviadas por Idempotency-Key: as mais recentes em um LRU limitado em
+ * memória, todas na tabela chaves_idempotencia até vencer o tempo de vida.
+ *
+ * Uma repetição que ainda está no LRU é respondida sem ir ao banco. Depois de um
+ * reinício, ou fora do LRU, é a chave única da tabela que barra a segunda gravação.
+ */
+public class ChavesIdempotencia {
+
+    private final IdempotenciaRepository repository;
+    private final int capacidade;
+    private final long tempoVidaMillis;
+    // Ordem de acesso: o primeiro é o menos usado recentemente
+    private final LinkedHashMap<String, RespostaIdempotente> recentes;
+    private ScheduledExecutorService limpeza;
+
+    public ChavesIdempotencia(IdempotenciaRepository repository, int capacidade, Duration tempoVida) {
+        this.repository = repository;
+        this.capacidade = capacidade;
+        this.tempoVidaMillis = tempoVida.toMillis();
+        this.recentes = new LinkedHashMap<>(Math.min(capacidade, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RespostaIdempotente> maisAntiga) {
+                return size() > ChavesIdempotencia.this.capacidade;
+            }
+        };
+    }
+
+    /**
+     * Resposta da chave se estiver na memória e dentro do tempo de vida; não consulta o banco.
+     */
+    public RespostaIdempotente buscarEmMemoria(String chave) {
+        synchronized (recentes) {
+            RespostaIdempotente resposta = recentes.get(chave);
+            if (resposta != null && vencida(resposta)) {
+                recentes.remove(chave);
+                return null;
+            }
+            return resposta;
+        }
+    }
+
+    /**
+     * Memória e, se não estiver lá, a tabela.
+     */
+    public RespostaIdempotente buscar(String chave) {
+        RespostaIdempotente resposta = buscarEmMemoria(chave);
+        if (resposta == null) {
+            resposta = repository.buscar(chave, Duration.ofMillis(tempoVidaMillis));
+            if (resposta != null) {
+                lembrar(chave, resposta);
+            }
+        }
+        return resposta;
+    }
+
+    /**
+     * Grava a chave na transação da movimentação; false se ela já tinha resposta dentro
+     * do tempo de vida.
+     */
+    public boolean registrar(Connection conn, String chave, RespostaIdempotente resposta) throws SQLException {
+        return repository.registrar(conn, chave, resposta, Duration.ofMillis(tempoVidaMillis));
+    }
+
+    // Chamado só depois do commit
+    public void lembrar(String chave, RespostaIdempotente resposta) {
+        synchronized (recentes) {
+            recentes.put(chave, resposta);
+        }
+    }
+
+    /**
+     * Remove da tabela as chaves vencidas agora e depois a cada intervaloMin minutos.
+     */
+    public synchronized void iniciarLimpeza(long intervaloMin) {
+        if (intervaloMin <= 0 || limpeza != null) {
+            return;
+        }
+        limpeza = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotencia-limpeza");
+            t.setDaemon(true);
+            return t;
+        });
+        limpeza.scheduleWithFixedDelay(() -> {
+            try {
+                repository.removerAnteriores(Duration.ofMillis(tempoVidaMillis));
+            } catch (RuntimeException e) {
+                System.err.println("Falha ao limpar chaves de idempotência: " + e.getMessage());
+            }
+        }, 0, intervaloMin, TimeUnit.MINUTES);
+    }
+
+    private boolean vencida(RespostaIdempotente resposta) {
+        return System.currentTimeMillis() - resposta.criadaEmMillis() > tempoVidaMillis;
+    }
+}
@@ -0,0 +1,18 @@
+package com.estoque.service;
+
+/**
+ * Saída maior que o saldo disponível do produto; vira resposta 409.
+ */
+public class EstoqueInsuficienteException extends RuntimeException {
+
+    private final Long produtoId;
+
+    public EstoqueInsuficienteException(Long produtoId) {
+        super("Estoque insuficiente para a operação (produto " + produtoId + ")");
+        this.produtoId = produtoId;
+    }
+
+    public Long getProdutoId() {
+        return produtoId;
+    }
+}
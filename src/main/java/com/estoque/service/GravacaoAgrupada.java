@@ -0,0 +1,212 @@
+package com.estoque.service;
+
+import com.estoque.model.ComandoMovimentacao;
+import com.estoque.model.Movimentacao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Group commit de movimentações avulsas.
+ *
+ * Os pedidos entram em uma fila limitada e uma única thread gravadora junta até
+ * maxLote deles, esperando no máximo esperaMaxima depois do primeiro, e aplica o
+ * grupo em uma transação (registrarLote no modo individual: um INSERT em batch e
+ * um UPDATE por produto com a variação líquida). O commit, e o fsync do WAL,
+ * passa a ser um por grupo em vez de um por movimentação.
+ *
+ * Cada pedido recebe seu próprio resultado pelo CompletableFuture, só depois do
+ * commit. Uma falha do banco no meio do grupo falha todos os pedidos dele. Quem
+ * espera desiste depois de timeoutMs se o pedido ainda não entrou em um grupo;
+ * a gravadora e quem espera disputam o pedido (decidido), então um pedido
+ * recusado com 503 nunca é aplicado.
+ */
+public class GravacaoAgrupada {
+
+    // decidido: marcado pela gravadora ao pôr o pedido no grupo, ou por quem espera ao desistir
+    private record Pedido(ComandoMovimentacao comando, CompletableFuture<Movimentacao> resultado,
+                          AtomicBoolean decidido) {}
+
+    private final Function<List<ComandoMovimentacao>, ResultadoLote> aplicarLote;
+    private final BlockingQueue<Pedido> fila;
+    private final int maxLote;
+    private final long esperaMaximaNanos;
+    private final long timeoutNanos;
+    private final Thread gravadora;
+    private volatile boolean ativa = true;
+
+    public GravacaoAgrupada(Function<List<ComandoMovimentacao>, ResultadoLote> aplicarLote,
+                            int maxLote, long esperaMaximaMs, int capacidadeFila, long timeoutMs) {
+        this.aplicarLote = aplicarLote;
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.maxLote = Math.max(1, maxLote);
+        this.esperaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, esperaMaximaMs));
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeoutMs));
+        this.gravadora = new Thread(this::executar, "movimentacoes-group-commit");
+        this.gravadora.setDaemon(true);
+        this.gravadora.start();
+    }
+
+    /**
+     * Enfileira o pedido e espera o commit do grupo.
+     *
+     * @throws SobrecargaException fila cheia, ou o pedido não entrou em um grupo
+     *         dentro do timeout (nos dois casos não foi nem será aplicado)
+     */
+    public Movimentacao registrar(ComandoMovimentacao comando) {
+        Pedido pedido = new Pedido(comando, new CompletableFuture<>(), new AtomicBoolean());
+        if (!ativa || !fila.offer(pedido)) {
+            throw new SobrecargaException("Fila de gravação de movimentações cheia, tente novamente");
+        }
+
+        try {
+            try {
+                return pedido.resultado().get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                desistir(pedido);
+                // Já está em um grupo sendo aplicado: o resultado sai com o commit
+                return pedido.resultado().get(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException("Falha na gravação da movimentação", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Commit do grupo de movimentações sem resposta; resultado desconhecido", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            desistir(pedido);
+            throw new IllegalStateException("Interrompido aguardando o commit; resultado desconhecido", e);
+        }
+    }
+
+    // Tira o pedido da disputa se a gravadora ainda não o pegou; senão não faz nada
+    private void desistir(Pedido pedido) {
+        if (pedido.decidido().compareAndSet(false, true)) {
+            fila.remove(pedido);
+            throw new SobrecargaException("Gravação de movimentações atrasada, tente novamente");
+        }
+    }
+
+    public int getTamanhoFila() {
+        return fila.size();
+    }
+
+    /**
+     * Para de aceitar pedidos e espera a gravadora aplicar os que já estão na fila
+     * por até esperaMs; depois disso a interrompe e os restantes são recusados.
+     * Retorna false se a gravadora continuar viva (presa no banco): nesse caso o
+     * pool de conexões não pode ser fechado.
+     */
+    public boolean parar(long esperaMs) {
+        ativa = false;
+        try {
+            gravadora.join(esperaMs);
+            if (gravadora.isAlive()) {
+                gravadora.interrupt();
+                gravadora.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !gravadora.isAlive();
+    }
+
+    private void executar() {
+        List<Pedido> grupo = new ArrayList<>(maxLote);
+        try {
+            while (ativa || !fila.isEmpty()) {
+                try {
+                    Pedido primeiro = fila.poll(100, TimeUnit.MILLISECONDS);
+                    if (primeiro == null) {
+                        continue;
+                    }
+                    grupo.add(primeiro);
+                    juntar(grupo);
+                    // Pedidos cujos clientes já desistiram ficam de fora
+                    grupo.removeIf(pedido -> !pedido.decidido().compareAndSet(false, true));
+                    aplicar(grupo);
+                } catch (RuntimeException e) {
+                    System.err.println("Falha no group commit de movimentações: " + e.getMessage());
+                } finally {
+                    // Interrompida em juntar, ou falha fora de aplicar: ninguém fica esperando à toa
+                    recusar(grupo, "Gravação de movimentações interrompida");
+                    grupo.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            ativa = false;
+        }
+
+        // Pedidos que entraram durante o encerramento ou que sobraram da interrupção
+        List<Pedido> restantes = new ArrayList<>();
+        fila.drainTo(restantes);
+        recusar(restantes, "Gravação de movimentações encerrada");
+    }
+
+    // Falha os pedidos ainda sem resultado (não aplicados)
+    private static void recusar(List<Pedido> pedidos, String motivo) {
+        for (Pedido pedido : pedidos) {
+            if (!pedido.resultado().isDone()) {
+                pedido.resultado().completeExceptionally(new SobrecargaException(motivo));
+            }
+        }
+    }
+
+    // Completa o grupo com o que chegar até maxLote ou até vencer a espera
+    private void juntar(List<Pedido> grupo) throws InterruptedException {
+        long limite = System.nanoTime() + esperaMaximaNanos;
+        while (grupo.size() < maxLote) {
+            fila.drainTo(grupo, maxLote - grupo.size());
+            long resta = limite - System.nanoTime();
+            if (grupo.size() >= maxLote || resta <= 0) {
+                return;
+            }
+            Pedido proximo = fila.poll(resta, TimeUnit.NANOSECONDS);
+            if (proximo == null) {
+                return;
+            }
+            grupo.add(proximo);
+        }
+    }
+
+    private void aplicar(List<Pedido> grupo) {
+        List<ComandoMovimentacao> comandos = new ArrayList<>(grupo.size());
+        for (Pedido pedido : grupo) {
+            comandos.add(pedido.comando());
+        }
+
+        ResultadoLote resultado;
+        try {
+            resultado = aplicarLote.apply(comandos);
+        } catch (RuntimeException e) {
+            for (Pedido pedido : grupo) {
+                pedido.resultado().completeExceptionally(e);
+            }
+            return;
+        }
+
+        for (ResultadoLote.Item item : resultado.getItens()) {
+            Pedido pedido = grupo.get(item.indice());
+            Long produtoId = pedido.comando().produtoId();
+            switch (item.situacao()) {
+                case REGISTRADA -> pedido.resultado().complete(item.movimentacao());
+                case PRODUTO_NAO_ENCONTRADO -> pedido.resultado().completeExceptionally(
+                        new RecursoNaoEncontradoException("Produto não encontrado: " + produtoId));
+                case ESTOQUE_INSUFICIENTE -> pedido.resultado().completeExceptionally(
+                        new EstoqueInsuficienteException(produtoId));
+                default -> pedido.resultado().completeExceptionally(
+                        new IllegalStateException("Movimentação não aplicada"));
+            }
+        }
+    }
+}
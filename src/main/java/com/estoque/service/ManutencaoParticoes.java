@@ -0,0 +1,91 @@
+package com.estoque.service;
+
+import com.estoque.repository.ParticoesMovimentacaoRepository;
+
+import java.time.YearMonth;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mantém as partições mensais de movimentacoes: cria as dos próximos meses antes
+ * que recebam linhas e, com retenção configurada, arquiva as mais antigas que ela.
+ *
+ * Movimentações de meses sem partição (retroativas ou muito à frente) ficam na
+ * partição padrão e passam para a do mês quando ela for criada.
+ */
+public class ManutencaoParticoes {
+
+    private final ParticoesMovimentacaoRepository particoes;
+    private final int mesesFuturos;
+    private final int retencaoMeses;
+    private ScheduledExecutorService agenda;
+
+    /**
+     * @param retencaoMeses meses anteriores ao atual mantidos anexados; 0 = nunca arquiva
+     */
+    public ManutencaoParticoes(ParticoesMovimentacaoRepository particoes, int mesesFuturos, int retencaoMeses) {
+        this.particoes = particoes;
+        this.mesesFuturos = mesesFuturos;
+        this.retencaoMeses = retencaoMeses;
+    }
+
+    public void executar() {
+        if (!particoes.tabelaParticionada()) {
+            System.err.println("movimentacoes não é particionada (migração V3 pendente); manutenção de partições ignorada");
+            return;
+        }
+
+        YearMonth atual = YearMonth.now();
+        int criadas = 0;
+        for (int i = 0; i <= mesesFuturos; i++) {
+            if (particoes.criar(atual.plusMonths(i))) {
+                criadas++;
+            }
+        }
+
+        int arquivadas = 0;
+        if (retencaoMeses > 0) {
+            YearMonth limite = atual.minusMonths(retencaoMeses);
+            for (YearMonth mes : particoes.listarMeses()) {
+                if (mes.isBefore(limite)) {
+                    particoes.arquivar(mes);
+                    arquivadas++;
+                }
+            }
+        }
+
+        if (criadas > 0 || arquivadas > 0) {
+            System.out.println("✓ Partições de movimentações: " + criadas + " criada(s), "
+                    + arquivadas + " arquivada(s) em " + ParticoesMovimentacaoRepository.ESQUEMA_ARQUIVO);
+        }
+    }
+
+    /**
+     * Executa agora, em segundo plano, e depois a cada intervaloHoras.
+     */
+    public synchronized void iniciar(long intervaloHoras) {
+        if (intervaloHoras <= 0 || agenda != null) {
+            return;
+        }
+        agenda = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "particoes-movimentacoes");
+            t.setDaemon(true);
+            return t;
+        });
+        agenda.scheduleWithFixedDelay(() -> {
+            try {
+                executar();
+            } catch (RuntimeException e) {
+                System.err.println("Falha na manutenção de partições: " + e.getMessage());
+            }
+        }, 0, intervaloHoras, TimeUnit.HOURS);
+    }
+
+    public synchronized void parar() {
+        if (agenda != null) {
+            agenda.shutdownNow();
+            agenda = null;
+        }
+    }
+}
@@ -1,62 +1,317 @@
 package com.estoque.service;
 
+import com.estoque.config.DatabaseConnection;
+import com.estoque.model.ComandoMovimentacao;
 import com.estoque.model.Movimentacao;
 import com.estoque.model.Produto;
 import com.estoque.model.TipoMovimentacao;
+import com.estoque.repository.CursorMovimentacao;
+import com.estoque.repository.FiltroMovimentacao;
 import com.estoque.repository.MovimentacaoRepository;
+import com.estoque.repository.MovimentacaoRepository.ConsumidorMovimentacao;
+import com.estoque.repository.ProdutoCache;
 import com.estoque.repository.ProdutoRepository;
+import com.estoque.repository.RespostaIdempotente;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class MovimentacaoService {
 
     private final MovimentacaoRepository movimentacaoRepository;
     private final ProdutoRepository produtoRepository;
+    private final AgregadosEstoque agregados;   // null = relatórios calculados no banco
+    private final CatalogoProdutos catalogo;    // null = listagem lida do banco
+    private final ProdutoCache produtos;        // null = sem cache de produtos por id
+    private volatile GravacaoAgrupada agrupada; // null = cada movimentação no seu próprio commit
+    private volatile TravasPorProduto travas;   // null = sem serialização por produto no processo
+    private volatile ChavesIdempotencia chaves; // null = Idempotency-Key ignorada
+
+    // Trabalho extra na transação da movimentação, depois do INSERT
+    private interface AposInserir<T> {
+        T executar(Connection conn, Movimentacao registrada) throws SQLException;
+    }
+
+    // Gravações da mesma Idempotency-Key barradas por outra requisição antes de desistir com 409
+    private static final int TENTATIVAS_CHAVE = 3;
+
+    // Desfaz a transação quando outra requisição já gravou a mesma chave
+    private static final class ChaveJaRegistrada extends RuntimeException {
+        ChaveJaRegistrada() {
+            super(null, null, false, false);
+        }
+    }
 
     public MovimentacaoService(MovimentacaoRepository movimentacaoRepository,
                                ProdutoRepository produtoRepository) {
+        this(movimentacaoRepository, produtoRepository, null, null, null);
+    }
+
+    public MovimentacaoService(MovimentacaoRepository movimentacaoRepository,
+                               ProdutoRepository produtoRepository,
+                               AgregadosEstoque agregados,
+                               CatalogoProdutos catalogo,
+                               ProdutoCache produtos) {
         this.movimentacaoRepository = movimentacaoRepository;
         this.produtoRepository = produtoRepository;
+        this.agregados = agregados;
+        this.catalogo = catalogo;
+        this.produtos = produtos;
+    }
+
+    /**
+     * Passa a aplicar as movimentações avulsas em grupos (ver GravacaoAgrupada).
+     */
+    public synchronized GravacaoAgrupada ativarGravacaoAgrupada(int maxLote, long esperaMaximaMs,
+                                                                int capacidadeFila, long timeoutMs) {
+        if (agrupada == null) {
+            agrupada = new GravacaoAgrupada(comandos -> registrarLote(comandos, false),
+                    maxLote, esperaMaximaMs, capacidadeFila, timeoutMs);
+        }
+        return agrupada;
+    }
+
+    /**
+     * Aplica o que já está na fila do group commit; novas movimentações voltam a ter commit próprio.
+     * Retorna false se a gravadora não terminou em esperaMs (ver GravacaoAgrupada.parar).
+     */
+    public synchronized boolean pararGravacaoAgrupada(long esperaMs) {
+        if (agrupada != null) {
+            GravacaoAgrupada atual = agrupada;
+            agrupada = null;
+            return atual.parar(esperaMs);
+        }
+        return true;
+    }
+
+    /**
+     * Serializa no processo as movimentações avulsas de um mesmo produto (ver TravasPorProduto).
+     */
+    public void usarTravasPorProduto(TravasPorProduto travas) {
+        this.travas = travas;
+    }
+
+    public void usarChavesIdempotencia(ChavesIdempotencia chaves) {
+        this.chaves = chaves;
     }
 
     /**
-     * Registra uma nova movimentação e atualiza o estoque do produto
+     * Registra uma nova movimentação e atualiza o estoque do produto.
+     *
+     * O saldo é ajustado por um UPDATE condicional (quantidade_estoque >= saída) na
+     * mesma transação do INSERT da movimentação, então SAIDAs concorrentes no mesmo
+     * produto não perdem atualizações nem deixam o estoque negativo.
      */
-    public Movimentacao registrarMovimentacao(Long produtoId, 
-                                             TipoMovimentacao tipo, 
+    public Movimentacao registrarMovimentacao(Long produtoId,
+                                             TipoMovimentacao tipo,
                                              int quantidade,
                                              LocalDate data) {
-        // Buscar produto
-        Produto produto = produtoRepository.buscarPorId(produtoId);
-        if (produto == null) {
-            throw new RuntimeException("Produto não encontrado: " + produtoId);
+        GravacaoAgrupada grupo = agrupada;
+        if (grupo != null) {
+            return grupo.registrar(new ComandoMovimentacao(produtoId, tipo, quantidade, data));
+        }
+
+        return comTrava(produtoId, () -> aplicarMovimentacao(produtoId, tipo, quantidade, data, (conn, mov) -> mov));
+    }
+
+    /**
+     * Registra a movimentação uma única vez por Idempotency-Key.
+     *
+     * Uma chave já vista devolve a resposta gravada da primeira vez, vinda da memória
+     * sem consultar o banco enquanto estiver no LRU. Para uma chave nova a resposta
+     * (serializada por corpo) é gravada na mesma transação da movimentação; se outra
+     * requisição gravou a chave antes, a transação é desfeita e a resposta dela é
+     * repetida. Não passa pelo group commit, que não tem onde gravar a chave.
+     *
+     * @throws ChaveIdempotenciaReutilizadaException chave já usada com outro conteúdo
+     */
+    public ResultadoIdempotente registrarMovimentacao(ComandoMovimentacao comando, String chave,
+                                                      Function<Movimentacao, byte[]> corpo) {
+        ChavesIdempotencia chavesAtuais = chaves;
+        if (chavesAtuais == null) {
+            Movimentacao criada = registrarMovimentacao(comando.produtoId(), comando.tipo(), comando.quantidade(), comando.data());
+            return new ResultadoIdempotente(201, corpo.apply(criada), false);
+        }
+
+        String impressao = comando.produtoId() + "|" + comando.tipo() + "|" + comando.quantidade() + "|" + comando.data();
+        RespostaIdempotente anterior = chavesAtuais.buscarEmMemoria(chave);
+        if (anterior != null) {
+            return repetir(anterior, chave, impressao);
+        }
+
+        return comTrava(comando.produtoId(), () -> {
+            // A linha que barrou a gravação pode vencer ou ser limpa antes de ser lida:
+            // aí a chave está livre de novo e a movimentação é tentada outra vez
+            for (int tentativa = 0; tentativa < TENTATIVAS_CHAVE; tentativa++) {
+                // Com a trava, uma repetição concorrente no mesmo produto já encontra a chave aqui
+                RespostaIdempotente gravada = chavesAtuais.buscar(chave);
+                if (gravada != null) {
+                    return repetir(gravada, chave, impressao);
+                }
+
+                RespostaIdempotente nova;
+                try {
+                    nova = aplicarMovimentacao(comando.produtoId(), comando.tipo(), comando.quantidade(), comando.data(),
+                            (conn, mov) -> {
+                                RespostaIdempotente resposta = new RespostaIdempotente(
+                                        201, impressao, corpo.apply(mov), System.currentTimeMillis());
+                                if (!chavesAtuais.registrar(conn, chave, resposta)) {
+                                    throw new ChaveJaRegistrada();
+                                }
+                                return resposta;
+                            });
+                } catch (ChaveJaRegistrada e) {
+                    continue;
+                }
+                chavesAtuais.lembrar(chave, nova);
+                return new ResultadoIdempotente(nova.status(), nova.corpo(), false);
+            }
+            throw new ChaveIdempotenciaEmConflitoException(chave);
+        });
+    }
+
+    private static ResultadoIdempotente repetir(RespostaIdempotente resposta, String chave, String impressao) {
+        if (!resposta.impressao().equals(impressao)) {
+            throw new ChaveIdempotenciaReutilizadaException(chave);
+        }
+        return new ResultadoIdempotente(resposta.status(), resposta.corpo(), true);
+    }
+
+    private <T> T comTrava(Long produtoId, Supplier<T> trabalho) {
+        TravasPorProduto travasAtuais = travas;
+        if (travasAtuais != null) {
+            // A trava cobre também os agregados, que assim recebem as variações do produto em ordem
+            return travasAtuais.executar(produtoId, trabalho);
         }
+        return trabalho.get();
+    }
 
-        // Criar movimentação
-        Movimentacao movimentacao = new Movimentacao();
-        movimentacao.setProduto(produto);
-        movimentacao.setTipoMovimentacao(tipo);
-        movimentacao.setQuantidadeMovimentada(quantidade);
-        movimentacao.setDataMovimentacao(data);
-
-        // Atualizar estoque do produto
-        int novoEstoque = produto.getQuantidadeEstoque();
-        
-        if (tipo == TipoMovimentacao.ENTRADA) {
-            novoEstoque += quantidade;
-        } else if (tipo == TipoMovimentacao.SAIDA) {
-            novoEstoque -= quantidade;
-            if (novoEstoque < 0) {
-                throw new RuntimeException("Estoque insuficiente para a operação");
+    private <T> T aplicarMovimentacao(Long produtoId, TipoMovimentacao tipo, int quantidade, LocalDate data,
+                                      AposInserir<T> apos) {
+        int delta = tipo == TipoMovimentacao.ENTRADA ? quantidade : -quantidade;
+
+        T registrada = DatabaseConnection.emTransacao(conn -> {
+            Integer novoEstoque = produtoRepository.ajustarEstoque(conn, produtoId, delta);
+            if (novoEstoque == null) {
+                if (!produtoRepository.existe(conn, produtoId)) {
+                    throw new RecursoNaoEncontradoException("Produto não encontrado: " + produtoId);
+                }
+                throw new EstoqueInsuficienteException(produtoId);
             }
+
+            Produto produto = new Produto();
+            produto.setId(produtoId);
+            produto.setQuantidadeEstoque(novoEstoque);
+
+            Movimentacao movimentacao = new Movimentacao();
+            movimentacao.setProduto(produto);
+            movimentacao.setTipoMovimentacao(tipo);
+            movimentacao.setQuantidadeMovimentada(quantidade);
+            movimentacao.setDataMovimentacao(data);
+
+            return apos.executar(conn, movimentacaoRepository.inserir(conn, movimentacao));
+        });
+
+        if (agregados != null) {
+            agregados.estoqueAlterado(produtoId, delta);
+        }
+        if (catalogo != null) {
+            catalogo.marcarDesatualizado();
+        }
+        if (produtos != null) {
+            produtos.invalidar(produtoId);
         }
-        
-        produto.setQuantidadeEstoque(novoEstoque);
-        produtoRepository.salvar(produto);
+        return registrada;
+    }
+
+    /**
+     * Registra um lote de movimentações em uma única transação.
+     *
+     * Os saldos dos produtos envolvidos são travados uma vez, cada item é validado
+     * na ordem recebida e no fim o estoque recebe só a variação líquida por produto,
+     * com os INSERTs enviados via executeBatch.
+     *
+     * @param atomico true = tudo ou nada; false = aplica os itens válidos e reporta os demais
+     */
+    public ResultadoLote registrarLote(List<ComandoMovimentacao> comandos, boolean atomico) {
+        long inicio = System.nanoTime();
+
+        Set<Long> produtoIds = new HashSet<>();
+        for (ComandoMovimentacao c : comandos) {
+            produtoIds.add(c.produtoId());
+        }
+
+        // Preenchido dentro da transação; só vai para os agregados depois do commit
+        Map<Long, Integer> deltas = new HashMap<>();
+
+        ResultadoLote resultado = DatabaseConnection.emTransacao(conn -> {
+            Map<Long, Integer> saldos = produtoRepository.bloquearSaldos(conn, produtoIds);
+            List<ResultadoLote.Item> itens = new ArrayList<>(comandos.size());
+            List<Movimentacao> aceitas = new ArrayList<>(comandos.size());
+            boolean houveFalha = false;
+
+            for (int i = 0; i < comandos.size(); i++) {
+                ComandoMovimentacao c = comandos.get(i);
+                Integer saldo = saldos.get(c.produtoId());
+                if (saldo == null) {
+                    itens.add(new ResultadoLote.Item(i, ResultadoLote.Situacao.PRODUTO_NAO_ENCONTRADO, null));
+                    houveFalha = true;
+                    continue;
+                }
+
+                int delta = c.tipo() == TipoMovimentacao.ENTRADA ? c.quantidade() : -c.quantidade();
+                if (saldo + delta < 0) {
+                    itens.add(new ResultadoLote.Item(i, ResultadoLote.Situacao.ESTOQUE_INSUFICIENTE, null));
+                    houveFalha = true;
+                    continue;
+                }
 
-        // Salvar movimentação
-        return movimentacaoRepository.salvar(movimentacao);
+                saldos.put(c.produtoId(), saldo + delta);
+                deltas.merge(c.produtoId(), delta, Integer::sum);
+
+                Produto produto = new Produto();
+                produto.setId(c.produtoId());
+                Movimentacao mov = new Movimentacao(null, produto, c.data(), c.quantidade(), c.tipo());
+                aceitas.add(mov);
+                itens.add(new ResultadoLote.Item(i, ResultadoLote.Situacao.REGISTRADA, mov));
+            }
+
+            if (atomico && houveFalha) {
+                // Nada foi escrito; o commit só libera as travas
+                itens.replaceAll(item -> item.sucesso()
+                        ? new ResultadoLote.Item(item.indice(), ResultadoLote.Situacao.NAO_APLICADA, null)
+                        : item);
+                return new ResultadoLote(itens, false, System.nanoTime() - inicio);
+            }
+
+            produtoRepository.aplicarDeltas(conn, deltas);
+            movimentacaoRepository.inserirLote(conn, aceitas);
+
+            return new ResultadoLote(itens, true, System.nanoTime() - inicio);
+        });
+
+        if (resultado.isAplicado() && !deltas.isEmpty()) {
+            if (agregados != null) {
+                agregados.estoquesAlterados(deltas);
+            }
+            if (catalogo != null) {
+                catalogo.marcarDesatualizado();
+            }
+            if (produtos != null) {
+                produtos.invalidar(deltas.keySet());
+            }
+        }
+        return resultado;
     }
 
     /**
@@ -66,11 +321,34 @@ public class MovimentacaoService {
         return movimentacaoRepository.buscarTodos();
     }
 
+    /**
+     * Página de movimentações filtradas, da mais recente para a mais antiga.
+     * Busca um item a mais para saber se existe página seguinte.
+     */
+    public Pagina<Movimentacao> listarMovimentacoes(FiltroMovimentacao filtro,
+                                                    CursorMovimentacao apos,
+                                                    int limite) {
+        List<Movimentacao> itens = movimentacaoRepository.buscarPagina(filtro, apos, limite + 1);
+        boolean temMais = itens.size() > limite;
+        if (temMais) {
+            itens = itens.subList(0, limite);
+        }
+        return new Pagina<>(itens, temMais);
+    }
+
+    /**
+     * Percorre as movimentações filtradas em ordem cronológica sem carregá-las em memória.
+     * Retorna quantas foram entregues ao consumidor.
+     */
+    public long exportarMovimentacoes(FiltroMovimentacao filtro, int tamanhoLote,
+                                      ConsumidorMovimentacao consumidor) throws IOException {
+        return movimentacaoRepository.exportar(filtro, tamanhoLote, consumidor);
+    }
+
     /**
      * Busca movimentações por produto
      */
     public List<Movimentacao> buscarPorProduto(Long produtoId) {
-        // TODO: implementar se necessário
-        throw new UnsupportedOperationException("Método ainda não implementado");
+        return movimentacaoRepository.buscarPorProduto(produtoId);
     }
 }
@@ -0,0 +1,9 @@
+package com.estoque.service;
+
+import java.util.List;
+
+/**
+ * Uma página de resultados e a indicação de que há mais depois dela.
+ */
+public record Pagina<T>(List<T> itens, boolean temMais) {
+}
@@ -1,6 +1,7 @@
 package com.estoque.service;
 
 import com.estoque.model.Produto;
+import com.estoque.repository.ProdutoCache;
 import com.estoque.repository.ProdutoRepository;
 
 import java.math.BigDecimal;
@@ -9,36 +10,142 @@ import java.util.List;
 public class ProdutoService {
 
     private final ProdutoRepository produtoRepository;
+    private final AgregadosEstoque agregados;   // null = relatórios calculados no banco
+    private final CatalogoProdutos catalogo;    // null = listagem lida do banco
+    private final ProdutoCache cache;           // null = busca por id sempre no banco
 
     public ProdutoService(ProdutoRepository produtoRepository) {
+        this(produtoRepository, null, null, null);
+    }
+
+    public ProdutoService(ProdutoRepository produtoRepository, AgregadosEstoque agregados,
+                          CatalogoProdutos catalogo, ProdutoCache cache) {
         this.produtoRepository = produtoRepository;
+        this.agregados = agregados;
+        this.catalogo = catalogo;
+        this.cache = cache;
     }
 
     // CRUD
     public Produto criarProduto(Produto produto) {
-        return produtoRepository.salvar(produto);
+        Produto salvo = produtoRepository.salvar(produto);
+        propagarEscrita(salvo.getId());
+        return salvo;
     }
 
     public Produto atualizarProduto(Produto produto) {
-        return produtoRepository.salvar(produto);
+        Produto salvo = produtoRepository.salvar(produto);
+        propagarEscrita(salvo.getId());
+        return salvo;
     }
 
     public void removerProduto(Long id) {
         produtoRepository.remover(id);
+        if (cache != null) {
+            cache.invalidar(id);
+        }
+        if (agregados != null) {
+            agregados.produtoRemovido(id);
+        }
+        if (catalogo != null) {
+            catalogo.produtoRemovido(id);
+        }
+    }
+
+    // Relê o produto salvo para agregados e catálogo receberem o estado do banco, com a categoria
+    private void propagarEscrita(Long id) {
+        if (cache != null && id != null) {
+            cache.invalidar(id);
+        }
+        if ((agregados == null && catalogo == null) || id == null) {
+            return;
+        }
+        Produto atual = produtoRepository.buscarPorId(id);
+        if (atual == null) {
+            return;
+        }
+        if (agregados != null) {
+            agregados.produtoSalvo(atual);
+        }
+        if (catalogo != null) {
+            catalogo.produtoSalvo(atual);
+        }
+    }
+
+    /**
+     * Produto com a categoria, ou null se não existir. A instância pode vir do cache
+     * e não deve ser alterada.
+     */
+    public Produto buscarPorId(Long id) {
+        return cache != null ? cache.buscarPorId(id) : produtoRepository.buscarPorId(id);
     }
 
     public List<Produto> listarProdutos() {
-        return produtoRepository.buscarTodos();
+        return listarCatalogo().produtos();
+    }
+
+    /**
+     * Catálogo completo ordenado por nome. Com o catálogo em memória a sequência
+     * identifica o snapshot; sem ele vem -1 e a lista é lida do banco.
+     */
+    public CatalogoProdutos.Snapshot listarCatalogo() {
+        if (catalogo != null) {
+            return catalogo.atual();
+        }
+        return new CatalogoProdutos.Snapshot(produtoRepository.buscarTodos(), -1, System.nanoTime());
     }
 
+    // Token de versão do que listarCatalogo devolve, para ETag
+    public String versaoCatalogo() {
+        return catalogo != null
+                ? "s" + catalogo.atual().sequencia()
+                : produtoRepository.versao();
+    }
+
+    // Força a releitura do catálogo em memória; null se ele estiver desligado
+    public CatalogoProdutos.Snapshot recarregarCatalogo() {
+        return catalogo != null ? catalogo.recarregar() : null;
+    }
+
+    // Limites do percentual de reajuste: até 6 casas decimais e menor que 100 em valor absoluto
+    public static final int MAX_ESCALA_PERCENTUAL = 6;
+    public static final int MAX_DIGITOS_PERCENTUAL = 2;
+
     //Reajusta o preço de todos os produtos em um percentual
-    public void reajustarPrecos(BigDecimal percentual) {
-        for (Produto p : produtoRepository.buscarTodos()) {
-            BigDecimal novoPreco = p.getPrecoUnitario()
-                    .multiply(BigDecimal.ONE.add(percentual));
-            p.setPrecoUnitario(novoPreco);
-            produtoRepository.salvar(p);
+    public int reajustarPrecos(BigDecimal percentual) {
+        return reajustarPrecos(percentual, null, null);
+    }
+
+    /**
+     * Reajusta os preços em um percentual (0.10 = +10%) com um único UPDATE,
+     * opcionalmente só de uma categoria e/ou de uma lista de ids.
+     * Retorna quantos produtos foram alterados.
+     */
+    public int reajustarPrecos(BigDecimal percentual, Long categoriaId, List<Long> ids) {
+        // Validado antes de qualquer conta: BigDecimal.add com 1e-99999999 não termina
+        if (percentual.scale() > MAX_ESCALA_PERCENTUAL
+                || (percentual.signum() != 0
+                    && percentual.precision() - percentual.scale() > MAX_DIGITOS_PERCENTUAL)) {
+            throw new IllegalArgumentException("Percentual de reajuste fora do intervalo permitido: " + percentual);
+        }
+        BigDecimal fator = BigDecimal.ONE.add(percentual);
+        if (fator.signum() <= 0) {
+            throw new IllegalArgumentException("Percentual de reajuste deve ser maior que -1 (-100%)");
+        }
+        int alterados = produtoRepository.reajustarPrecos(fator, categoriaId, ids);
+        if (alterados > 0) {
+            // Alteração em massa: mais simples recarregar do que aplicar produto a produto
+            if (agregados != null) {
+                agregados.recarregar();
+            }
+            if (catalogo != null) {
+                catalogo.marcarDesatualizado();
+            }
+            if (cache != null) {
+                cache.limpar();
+            }
         }
+        return alterados;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package com.estoque.service;
+
+/**
+ * Entidade referenciada pela requisição não existe; vira resposta 404.
+ */
+public class RecursoNaoEncontradoException extends RuntimeException {
+
+    public RecursoNaoEncontradoException(String message) {
+        super(message);
+    }
+}
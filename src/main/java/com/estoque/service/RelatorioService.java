@@ -1,27 +1,55 @@
 package com.estoque.service;
 
-import com.estoque.model.Categoria;
-import com.estoque.model.Movimentacao;
+import com.estoque.config.VersaoDados;
 import com.estoque.model.Produto;
 import com.estoque.model.TipoMovimentacao;
 import com.estoque.repository.MovimentacaoRepository;
 import com.estoque.repository.ProdutoRepository;
+import com.estoque.repository.TotalCategoria;
+import com.estoque.repository.TotalPorProduto;
 
 import java.math.BigDecimal;
-import java.util.Comparator;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class RelatorioService {
 
     private final ProdutoRepository produtoRepository;
     private final MovimentacaoRepository movimentacaoRepository;
+    private final AgregadosEstoque agregados;   // null = calcula no banco a cada chamada
 
     public RelatorioService(ProdutoRepository produtoRepository,
                             MovimentacaoRepository movimentacaoRepository) {
+        this(produtoRepository, movimentacaoRepository, null);
+    }
+
+    public RelatorioService(ProdutoRepository produtoRepository,
+                            MovimentacaoRepository movimentacaoRepository,
+                            AgregadosEstoque agregados) {
         this.produtoRepository = produtoRepository;
         this.movimentacaoRepository = movimentacaoRepository;
+        this.agregados = agregados;
+    }
+
+    // ==================== VERSÕES (ETag) ====================
+    // Lidas antes de gerar o relatório: nunca mais novas que os dados devolvidos
+
+    // balanço, abaixo do mínimo e produtos por categoria
+    public String versaoEstoque() {
+        return agregados != null ? agregados.versao() : produtoRepository.versao();
+    }
+
+    // lista de preços e balanço por produto
+    public String versaoPrecos() {
+        return produtoRepository.versao();
+    }
+
+    // maior entrada/saída (totais de movimentações + nomes dos produtos)
+    public String versaoMovimentacoes() {
+        return "m" + VersaoDados.atual(VersaoDados.Tabela.MOVIMENTACOES)
+                + ".p" + VersaoDados.atual(VersaoDados.Tabela.PRODUTOS);
     }
 
     // 1) Lista de preços com categoria
@@ -38,93 +66,61 @@ public class RelatorioService {
         // pode ser feito no handler/JSON do HttpApiServer
     }
 
-    // 3) Produtos abaixo da quantidade mínima
+    // 3) Produtos abaixo da quantidade mínima (memória ou índice parcial no banco)
     public List<Produto> listarProdutosAbaixoDoMinimo() {
-        return produtoRepository.buscarTodos().stream()
-                .filter(p -> p.getQuantidadeEstoque() < p.getQuantidadeMinima())
-                .sorted(Comparator.comparing(Produto::getNome))
-                .collect(Collectors.toList());
+        return agregados != null
+                ? agregados.getAbaixoDoMinimo()
+                : produtoRepository.buscarAbaixoDoMinimo();
+    }
+
+    // 4) Quantidade e valor de produtos por categoria, ordenado pelo nome
+    public List<TotalCategoria> totaisPorCategoria() {
+        return agregados != null
+                ? agregados.getTotaisPorCategoria()
+                : produtoRepository.totaisPorCategoria();
     }
 
-    // 4) Quantidade de produtos por categoria
     public Map<String, Long> contarProdutosPorCategoria() {
-        return produtoRepository.buscarTodos().stream()
-                .collect(Collectors.groupingBy(
-                        p -> {
-                            Categoria c = p.getCategoria();
-                            return c != null && c.getNome() != null
-                                    ? c.getNome()
-                                    : "Sem categoria";
-                        },
-                        Collectors.counting()
-                ));
+        Map<String, Long> contagem = new LinkedHashMap<>();
+        for (TotalCategoria t : totaisPorCategoria()) {
+            contagem.put(t.categoria(), t.quantidade());
+        }
+        return contagem;
     }
 
     // 5) Produto com maior saída e maior entrada
     public MovimentacaoResumoMovimento calcularMaiorEntradaESaida() {
-        List<Movimentacao> movs = movimentacaoRepository.buscarTodos();
-
-        Map<Long, Integer> totalEntradaPorProduto = movs.stream()
-                .filter(m -> m.getTipoMovimentacao() == TipoMovimentacao.ENTRADA)
-                .collect(Collectors.groupingBy(
-                        m -> m.getProduto().getId(),
-                        Collectors.summingInt(Movimentacao::getQuantidadeMovimentada)
-                ));
-
-        Map<Long, Integer> totalSaidaPorProduto = movs.stream()
-                .filter(m -> m.getTipoMovimentacao() == TipoMovimentacao.SAIDA)
-                .collect(Collectors.groupingBy(
-                        m -> m.getProduto().getId(),
-                        Collectors.summingInt(Movimentacao::getQuantidadeMovimentada)
-                ));
-
-        Long produtoMaisEntradaId = totalEntradaPorProduto.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
-
-        Long produtoMaisSaidaId = totalSaidaPorProduto.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
-
-        Produto produtoMaisEntrada = produtoMaisEntradaId != null
-                ? produtoRepository.buscarPorId(produtoMaisEntradaId)
-                : null;
-
-        Produto produtoMaisSaida = produtoMaisSaidaId != null
-                ? produtoRepository.buscarPorId(produtoMaisSaidaId)
-                : null;
-
-        Integer qtdMaisEntrada = produtoMaisEntradaId != null
-                ? totalEntradaPorProduto.get(produtoMaisEntradaId)
-                : 0;
-
-        Integer qtdMaisSaida = produtoMaisSaidaId != null
-                ? totalSaidaPorProduto.get(produtoMaisSaidaId)
-                : 0;
-
-        return new MovimentacaoResumoMovimento(produtoMaisEntrada, qtdMaisEntrada,
-                                               produtoMaisSaida, qtdMaisSaida);
+        return calcularMaiorEntradaESaida(null, null);
+    }
+
+    // Mesmo relatório restrito a movimentações entre de e ate (inclusivos, null = sem limite)
+    public MovimentacaoResumoMovimento calcularMaiorEntradaESaida(LocalDate de, LocalDate ate) {
+        TotalPorProduto maisEntrada = movimentacaoRepository.buscarMaiorTotalPorTipo(TipoMovimentacao.ENTRADA, de, ate);
+        TotalPorProduto maisSaida = movimentacaoRepository.buscarMaiorTotalPorTipo(TipoMovimentacao.SAIDA, de, ate);
+
+        return new MovimentacaoResumoMovimento(
+                maisEntrada != null ? maisEntrada.produto() : null,
+                maisEntrada != null ? maisEntrada.total() : 0,
+                maisSaida != null ? maisSaida.produto() : null,
+                maisSaida != null ? maisSaida.total() : 0);
     }
 
     // já existia: valor total do estoque
     public BigDecimal calcularValorTotalEstoque() {
-        return produtoRepository.buscarTodos().stream()
-                .map(p -> p.getPrecoUnitario()
-                        .multiply(BigDecimal.valueOf(p.getQuantidadeEstoque())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return agregados != null
+                ? agregados.getValorTotal()
+                : produtoRepository.calcularValorTotalEstoque();
     }
 
     // DTO simples para retornar no endpoint de maior entrada/saída
     public static class MovimentacaoResumoMovimento {
         private final Produto produtoMaisEntrada;
-        private final int quantidadeEntrada;
+        private final long quantidadeEntrada;
         private final Produto produtoMaisSaida;
-        private final int quantidadeSaida;
+        private final long quantidadeSaida;
 
-        public MovimentacaoResumoMovimento(Produto produtoMaisEntrada, int quantidadeEntrada,
-                                           Produto produtoMaisSaida, int quantidadeSaida) {
+        public MovimentacaoResumoMovimento(Produto produtoMaisEntrada, long quantidadeEntrada,
+                                           Produto produtoMaisSaida, long quantidadeSaida) {
             this.produtoMaisEntrada = produtoMaisEntrada;
             this.quantidadeEntrada = quantidadeEntrada;
             this.produtoMaisSaida = produtoMaisSaida;
@@ -135,7 +131,7 @@ public class RelatorioService {
             return produtoMaisEntrada;
         }
 
-        public int getQuantidadeEntrada() {
+        public long getQuantidadeEntrada() {
             return quantidadeEntrada;
         }
 
@@ -143,7 +139,7 @@ public class RelatorioService {
             return produtoMaisSaida;
         }
 
-        public int getQuantidadeSaida() {
+        public long getQuantidadeSaida() {
             return quantidadeSaida;
         }
     }
@@ -0,0 +1,8 @@
+package com.estoque.service;
+
+/**
+ * Resposta de um POST com Idempotency-Key. repetida = já havia sido enviada antes
+ * para a mesma chave e nada foi gravado agora.
+ */
+public record ResultadoIdempotente(int status, byte[] corpo, boolean repetida) {
+}
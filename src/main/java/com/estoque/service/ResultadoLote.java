@@ -0,0 +1,61 @@
+package com.estoque.service;
+
+import com.estoque.model.Movimentacao;
+
+import java.util.List;
+
+/**
+ * Resultado de um lote de movimentações: situação de cada item, na ordem
+ * recebida, e o tempo gasto para aplicar o lote.
+ */
+public class ResultadoLote {
+
+    public enum Situacao { REGISTRADA, PRODUTO_NAO_ENCONTRADO, ESTOQUE_INSUFICIENTE, NAO_APLICADA }
+
+    public record Item(int indice, Situacao situacao, Movimentacao movimentacao) {
+        public boolean sucesso() {
+            return situacao == Situacao.REGISTRADA;
+        }
+    }
+
+    private final List<Item> itens;
+    private final boolean aplicado;
+    private final long duracaoNanos;
+
+    public ResultadoLote(List<Item> itens, boolean aplicado, long duracaoNanos) {
+        this.itens = itens;
+        this.aplicado = aplicado;
+        this.duracaoNanos = duracaoNanos;
+    }
+
+    public List<Item> getItens() {
+        return itens;
+    }
+
+    // false quando o lote era "tudo ou nada" e foi desfeito por causa de alguma falha
+    public boolean isAplicado() {
+        return aplicado;
+    }
+
+    public int getTotal() {
+        return itens.size();
+    }
+
+    public int getRegistradas() {
+        int n = 0;
+        for (Item item : itens) {
+            if (item.sucesso()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public long getDuracaoNanos() {
+        return duracaoNanos;
+    }
+
+    public long getEventosPorSegundo() {
+        return duracaoNanos > 0 ? getRegistradas() * 1_000_000_000L / duracaoNanos : 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.estoque.service;
+
+/**
+ * Fila de escrita cheia: o pedido foi recusado sem ser aplicado; vira resposta 503.
+ */
+public class SobrecargaException extends RuntimeException {
+
+    public SobrecargaException(String message) {
+        super(message);
+    }
+}
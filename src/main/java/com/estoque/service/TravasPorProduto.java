@@ -0,0 +1,98 @@
+package com.estoque.service;
+
+import com.estoque.config.Metricas;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Travas em faixas por produto: movimentações do mesmo produto (e de produtos que
+ * caem na mesma faixa) rodam uma de cada vez, produtos diferentes em paralelo.
+ *
+ * O banco já serializa o UPDATE do saldo pela trava da linha, mas cada requisição
+ * esperando lá segura uma conexão do pool. Esperando aqui, um SKU disputado ocupa
+ * uma conexão só e as demais ficam livres para os outros produtos.
+ */
+public class TravasPorProduto {
+
+    private final ReentrantLock[] faixas;
+    // Último produto que obteve cada faixa, para identificar o SKU quente nas métricas
+    private final AtomicLongArray produtos;
+    private final long esperaMaximaNanos;
+
+    /**
+     * @param quantidade número de faixas, arredondado para potência de 2
+     */
+    public TravasPorProduto(int quantidade, long esperaMaximaMs) {
+        int n = quantidade <= 1 ? 1 : Integer.highestOneBit(quantidade - 1) << 1;
+        this.faixas = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            faixas[i] = new ReentrantLock();
+        }
+        this.produtos = new AtomicLongArray(n);
+        this.esperaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+    }
+
+    /**
+     * Executa o trabalho com a faixa do produto travada. Se a espera passar do máximo
+     * lança SobrecargaException sem executar.
+     */
+    public <T> T executar(long produtoId, Supplier<T> trabalho) {
+        int faixa = faixa(produtoId);
+        ReentrantLock trava = faixas[faixa];
+
+        if (!trava.tryLock()) {
+            long inicio = System.nanoTime();
+            boolean obtida;
+            try {
+                obtida = trava.tryLock(esperaMaximaNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                obtida = false;
+            }
+            Metricas.esperaTravaProduto(System.nanoTime() - inicio, obtida);
+            if (!obtida) {
+                throw new SobrecargaException("Muitas movimentações simultâneas no produto " + produtoId
+                        + ", tente novamente");
+            }
+        } else {
+            Metricas.esperaTravaProduto(0, true);
+        }
+
+        produtos.set(faixa, produtoId);
+        try {
+            return trabalho.get();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    public int getQuantidade() {
+        return faixas.length;
+    }
+
+    /**
+     * Requisições esperando em cada faixa, só as que têm fila, com o último produto que a obteve.
+     */
+    public Map<String, Long> filas() {
+        Map<String, Long> filas = new TreeMap<>();
+        for (int i = 0; i < faixas.length; i++) {
+            int fila = faixas[i].getQueueLength();
+            if (fila > 0) {
+                filas.put(Metricas.rotulo("stripe", i) + "," + Metricas.rotulo("product_id", produtos.get(i)),
+                        (long) fila);
+            }
+        }
+        return filas;
+    }
+
+    // Espalha ids sequenciais entre as faixas (mesma mistura do HashMap)
+    private int faixa(long produtoId) {
+        int h = Long.hashCode(produtoId);
+        return (h ^ (h >>> 16)) & (faixas.length - 1);
+    }
+}
@@ -0,0 +1,54 @@
+-- Esquema base, equivalente ao sql/init.sql. Idempotente para bancos que já
+-- foram criados pelo init.sql do docker-compose.
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_type WHERE typname = 'tipo_movimentacao') THEN
+        CREATE TYPE tipo_movimentacao AS ENUM ('ENTRADA', 'SAIDA');
+    END IF;
+END
+$$;
+
+CREATE TABLE IF NOT EXISTS categorias (
+    id         SERIAL PRIMARY KEY,
+    nome       VARCHAR(100) NOT NULL,
+    descricao  TEXT,
+    tamanho    VARCHAR(20)  NOT NULL,
+    embalagem  VARCHAR(20)  NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS produtos (
+    id                  SERIAL PRIMARY KEY,
+    nome                VARCHAR(100)   NOT NULL,
+    preco_unitario      DECIMAL(10, 2) NOT NULL,
+    unidade             VARCHAR(10)    NOT NULL,
+    quantidade_estoque  INTEGER        NOT NULL DEFAULT 0,
+    quantidade_minima   INTEGER        NOT NULL DEFAULT 0,
+    quantidade_maxima   INTEGER        NOT NULL DEFAULT 0,
+    categoria_id        BIGINT REFERENCES categorias(id)
+);
+
+CREATE TABLE IF NOT EXISTS movimentacoes (
+    id                     SERIAL PRIMARY KEY,
+    produto_id             BIGINT            NOT NULL REFERENCES produtos(id),
+    data_movimentacao      DATE              NOT NULL,
+    quantidade_movimentada INTEGER           NOT NULL,
+    tipo_movimentacao      tipo_movimentacao NOT NULL
+);
+
+-- Bancos criados com os nomes que o MovimentacaoRepository usava (quantidade/tipo)
+-- passam a seguir o esquema oficial
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema()
+                 AND table_name = 'movimentacoes' AND column_name = 'quantidade') THEN
+        ALTER TABLE movimentacoes RENAME COLUMN quantidade TO quantidade_movimentada;
+    END IF;
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema()
+                 AND table_name = 'movimentacoes' AND column_name = 'tipo') THEN
+        ALTER TABLE movimentacoes RENAME COLUMN tipo TO tipo_movimentacao;
+    END IF;
+END
+$$;
@@ -0,0 +1,31 @@
+-- Índices para as consultas dos repositories e relatórios.
+
+-- ProdutoRepository.buscarTodos ordena por nome
+CREATE INDEX IF NOT EXISTS idx_produtos_nome
+    ON produtos (nome);
+
+-- Contagem por categoria, reajuste por categoria e FK
+CREATE INDEX IF NOT EXISTS idx_produtos_categoria
+    ON produtos (categoria_id);
+
+-- Relatório de produtos abaixo do mínimo: só as linhas que interessam, já em ordem de nome
+CREATE INDEX IF NOT EXISTS idx_produtos_abaixo_minimo
+    ON produtos (nome)
+    WHERE quantidade_estoque < quantidade_minima;
+
+-- Listagem paginada por keyset: ORDER BY data_movimentacao DESC, id DESC
+CREATE INDEX IF NOT EXISTS idx_movimentacoes_data_id
+    ON movimentacoes (data_movimentacao DESC, id DESC);
+
+-- Histórico de um produto na mesma ordem (também cobre a FK produto_id)
+CREATE INDEX IF NOT EXISTS idx_movimentacoes_produto_data_id
+    ON movimentacoes (produto_id, data_movimentacao DESC, id DESC);
+
+-- Totais de entrada/saída por produto (relatório movimentacoes-top) sem ler a tabela
+CREATE INDEX IF NOT EXISTS idx_movimentacoes_entradas
+    ON movimentacoes (produto_id) INCLUDE (quantidade_movimentada)
+    WHERE tipo_movimentacao = 'ENTRADA';
+
+CREATE INDEX IF NOT EXISTS idx_movimentacoes_saidas
+    ON movimentacoes (produto_id) INCLUDE (quantidade_movimentada)
+    WHERE tipo_movimentacao = 'SAIDA';
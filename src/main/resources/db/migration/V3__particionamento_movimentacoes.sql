@@ -0,0 +1,97 @@
+-- Particiona movimentacoes por mês de data_movimentacao (RANGE).
+--
+-- Cada mês fica em movimentacoes_AAAA_MM; datas sem partição própria caem em
+-- movimentacoes_padrao. Consultas com intervalo de datas só leem os meses do
+-- intervalo, e meses antigos podem ser desanexados sem DELETE (ver
+-- ManutencaoParticoes). A tabela existente é copiada uma única vez: com um
+-- histórico grande esta migração demora e segura a tabela durante a cópia.
+
+-- Cria a partição do mês de "mes" se ainda não existir. Linhas desse mês que já
+-- estejam na partição padrão são movidas para ela. Retorna true se criou.
+CREATE OR REPLACE FUNCTION criar_particao_movimentacoes(mes DATE) RETURNS BOOLEAN
+LANGUAGE plpgsql AS $$
+DECLARE
+    inicio DATE := date_trunc('month', mes)::date;
+    fim    DATE := (date_trunc('month', mes) + interval '1 month')::date;
+    nome   TEXT := 'movimentacoes_' || to_char(mes, 'YYYY_MM');
+BEGIN
+    IF to_regclass(quote_ident(nome)) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM movimentacoes_padrao
+               WHERE data_movimentacao >= inicio AND data_movimentacao < fim) THEN
+        -- Com a padrão anexada o Postgres recusa a nova faixa enquanto ela tiver linhas do mês
+        ALTER TABLE movimentacoes DETACH PARTITION movimentacoes_padrao;
+        EXECUTE format('CREATE TABLE %I PARTITION OF movimentacoes FOR VALUES FROM (%L) TO (%L)',
+                       nome, inicio, fim);
+        EXECUTE format('INSERT INTO %I SELECT * FROM movimentacoes_padrao
+                        WHERE data_movimentacao >= %L AND data_movimentacao < %L', nome, inicio, fim);
+        DELETE FROM movimentacoes_padrao WHERE data_movimentacao >= inicio AND data_movimentacao < fim;
+        ALTER TABLE movimentacoes ATTACH PARTITION movimentacoes_padrao DEFAULT;
+    ELSE
+        EXECUTE format('CREATE TABLE %I PARTITION OF movimentacoes FOR VALUES FROM (%L) TO (%L)',
+                       nome, inicio, fim);
+    END IF;
+    RETURN TRUE;
+END
+$$;
+
+DO $$
+DECLARE
+    mes DATE;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'movimentacoes'::regclass) = 'p' THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE movimentacoes RENAME TO movimentacoes_legado;
+    ALTER INDEX IF EXISTS movimentacoes_pkey RENAME TO movimentacoes_legado_pkey;
+    ALTER SEQUENCE movimentacoes_id_seq OWNED BY NONE;
+
+    -- A chave primária de uma tabela particionada precisa conter a coluna de partição
+    CREATE TABLE movimentacoes (
+        id                     INTEGER           NOT NULL DEFAULT nextval('movimentacoes_id_seq'),
+        produto_id             BIGINT            NOT NULL REFERENCES produtos(id),
+        data_movimentacao      DATE              NOT NULL,
+        quantidade_movimentada INTEGER           NOT NULL,
+        tipo_movimentacao      tipo_movimentacao NOT NULL,
+        PRIMARY KEY (id, data_movimentacao)
+    ) PARTITION BY RANGE (data_movimentacao);
+    ALTER SEQUENCE movimentacoes_id_seq OWNED BY movimentacoes.id;
+
+    CREATE TABLE movimentacoes_padrao PARTITION OF movimentacoes DEFAULT;
+
+    -- Meses que já têm movimentações, mais o atual e os três seguintes
+    FOR mes IN
+        SELECT DISTINCT date_trunc('month', data_movimentacao)::date FROM movimentacoes_legado
+        UNION
+        SELECT (date_trunc('month', current_date) + n * interval '1 month')::date FROM generate_series(0, 3) n
+    LOOP
+        PERFORM criar_particao_movimentacoes(mes);
+    END LOOP;
+
+    INSERT INTO movimentacoes (id, produto_id, data_movimentacao, quantidade_movimentada, tipo_movimentacao)
+    SELECT id, produto_id, data_movimentacao, quantidade_movimentada, tipo_movimentacao
+    FROM movimentacoes_legado;
+
+    DROP TABLE movimentacoes_legado;
+END
+$$;
+
+-- Os mesmos índices da V2, agora criados em cada partição (os antigos saíram com a tabela legada)
+CREATE INDEX IF NOT EXISTS idx_movimentacoes_data_id
+    ON movimentacoes (data_movimentacao DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_movimentacoes_produto_data_id
+    ON movimentacoes (produto_id, data_movimentacao DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_movimentacoes_entradas
+    ON movimentacoes (produto_id) INCLUDE (quantidade_movimentada)
+    WHERE tipo_movimentacao = 'ENTRADA';
+
+CREATE INDEX IF NOT EXISTS idx_movimentacoes_saidas
+    ON movimentacoes (produto_id) INCLUDE (quantidade_movimentada)
+    WHERE tipo_movimentacao = 'SAIDA';
+
+ANALYZE movimentacoes;
@@ -0,0 +1,14 @@
+-- Respostas de POST /api/movimentacoes por Idempotency-Key. A linha é gravada na
+-- mesma transação da movimentação, então uma chave nunca registra duas.
+
+CREATE TABLE IF NOT EXISTS chaves_idempotencia (
+    chave      VARCHAR(200) PRIMARY KEY,
+    impressao  VARCHAR(200) NOT NULL,
+    status     INTEGER      NOT NULL,
+    corpo      BYTEA        NOT NULL,
+    criada_em  TIMESTAMP    NOT NULL DEFAULT now()
+);
+
+-- Limpeza das chaves vencidas (ChavesIdempotencia)
+CREATE INDEX IF NOT EXISTS idx_chaves_idempotencia_criada_em
+    ON chaves_idempotencia (criada_em);
@@ -0,0 +1,215 @@
+package com.estoque;
+
+import com.estoque.config.DatabaseConnection;
+import com.estoque.config.SchemaMigrator;
+import com.estoque.repository.CategoriaCache;
+import com.estoque.repository.CategoriaRepository;
+import com.estoque.repository.MovimentacaoRepository;
+import com.estoque.repository.ProdutoCache;
+import com.estoque.repository.ProdutoRepository;
+import com.estoque.server.HttpApiServer;
+import com.estoque.service.AgregadosEstoque;
+import com.estoque.service.CatalogoProdutos;
+import com.estoque.service.CategoriaService;
+import com.estoque.service.MovimentacaoService;
+import com.estoque.service.ProdutoService;
+import com.estoque.service.RelatorioService;
+import com.estoque.service.TravasPorProduto;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SAIDAs concorrentes no mesmo produto pela API: nenhuma atualização se perde, o
+ * estoque nunca fica negativo e cada 201 corresponde a uma linha em movimentacoes.
+ *
+ * Precisa de um PostgreSQL descartável: só roda com DATABASE_URL definida (e
+ * DB_USER/DB_PASSWORD, como a aplicação). Cria os próprios produtos e não
+ * apaga nada.
+ */
+@EnabledIfEnvironmentVariable(named = "DATABASE_URL", matches = ".+")
+class MovimentacoesConcorrentesTest {
+
+    private static final int ESTOQUE_INICIAL = 40;
+    private static final int REQUISICOES = 100;
+
+    private static MovimentacaoService movimentacaoService;
+    private static HttpApiServer servidor;
+    private static HttpClient cliente;
+    private static String base;
+
+    @BeforeAll
+    static void iniciar() throws Exception {
+        new SchemaMigrator().migrar();
+
+        CategoriaRepository categoriaRepository = new CategoriaRepository();
+        CategoriaCache categoriaCache = new CategoriaCache(categoriaRepository);
+        ProdutoRepository produtoRepository = new ProdutoRepository(categoriaCache);
+        MovimentacaoRepository movimentacaoRepository = new MovimentacaoRepository();
+
+        AgregadosEstoque agregados = new AgregadosEstoque(produtoRepository, categoriaCache);
+        agregados.recarregar();
+        CatalogoProdutos catalogo = new CatalogoProdutos(produtoRepository, 1000, 300);
+        catalogo.recarregar();
+        ProdutoCache produtoCache = new ProdutoCache(produtoRepository, 1000);
+
+        movimentacaoService = new MovimentacaoService(
+                movimentacaoRepository, produtoRepository, agregados, catalogo, produtoCache);
+        servidor = new HttpApiServer(
+                new ProdutoService(produtoRepository, agregados, catalogo, produtoCache),
+                new CategoriaService(categoriaRepository, categoriaCache, catalogo, produtoCache),
+                movimentacaoService,
+                new RelatorioService(produtoRepository, movimentacaoRepository, agregados),
+                portaLivre());
+        servidor.start();
+
+        cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    @AfterAll
+    static void encerrar() {
+        if (servidor != null) {
+            servidor.stop(0);
+        }
+        DatabaseConnection.fechar();
+    }
+
+    @Test
+    void saidasConcorrentesSemTravasNoProcesso() throws Exception {
+        movimentacaoService.usarTravasPorProduto(null);
+        verificarSaidasConcorrentes();
+    }
+
+    @Test
+    void saidasConcorrentesComTravasPorProduto() throws Exception {
+        movimentacaoService.usarTravasPorProduto(new TravasPorProduto(64, 5000));
+        verificarSaidasConcorrentes();
+    }
+
+    private void verificarSaidasConcorrentes() throws Exception {
+        long produtoId = criarProduto(ESTOQUE_INICIAL);
+        HttpRequest saida = HttpRequest.newBuilder(URI.create(base + "/api/movimentacoes"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"produtoId\":" + produtoId + ",\"tipo\":\"SAIDA\",\"quantidade\":1,\"data\":\""
+                                + LocalDate.now() + "\"}"))
+                .build();
+
+        // Lê o saldo em paralelo enquanto as SAIDAs acontecem
+        AtomicBoolean terminou = new AtomicBoolean();
+        AtomicInteger menorSaldo = new AtomicInteger(Integer.MAX_VALUE);
+        Thread observador = new Thread(() -> {
+            while (!terminou.get()) {
+                menorSaldo.accumulateAndGet(saldo(produtoId), Math::min);
+            }
+        });
+        observador.start();
+
+        int criadas = 0;
+        int recusadas = 0;
+        CountDownLatch largada = new CountDownLatch(1);
+        try (ExecutorService clientes = Executors.newFixedThreadPool(32)) {
+            List<Future<Integer>> respostas = new ArrayList<>();
+            for (int i = 0; i < REQUISICOES; i++) {
+                respostas.add(clientes.submit(() -> {
+                    largada.await();
+                    return cliente.send(saida, HttpResponse.BodyHandlers.discarding()).statusCode();
+                }));
+            }
+            largada.countDown();
+            for (Future<Integer> resposta : respostas) {
+                int status = resposta.get();
+                if (status == 201) {
+                    criadas++;
+                } else {
+                    assertEquals(409, status, "SAIDA sem saldo deve responder 409");
+                    recusadas++;
+                }
+            }
+        } finally {
+            terminou.set(true);
+            observador.join();
+        }
+
+        assertEquals(REQUISICOES, criadas + recusadas);
+        assertEquals(ESTOQUE_INICIAL, criadas, "todo o saldo deve ser consumido, uma unidade por 201");
+        assertEquals(ESTOQUE_INICIAL - criadas, saldo(produtoId));
+        assertTrue(menorSaldo.get() >= 0, "estoque ficou negativo: " + menorSaldo.get());
+        assertEquals(criadas, contarMovimentacoes(produtoId));
+    }
+
+    // Pela API, para agregados, catálogo e cache conhecerem o produto
+    private static long criarProduto(int estoque) throws Exception {
+        HttpRequest criar = HttpRequest.newBuilder(URI.create(base + "/api/produtos"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"nome\":\"Teste concorrência " + System.nanoTime()
+                        + "\",\"precoUnitario\":1.00,\"unidade\":\"UN\",\"quantidadeEstoque\":" + estoque + "}"))
+                .build();
+        HttpResponse<String> resposta = cliente.send(criar, HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, resposta.statusCode(), resposta.body());
+        Matcher id = Pattern.compile("\"id\":(\\d+)").matcher(resposta.body());
+        assertTrue(id.find(), resposta.body());
+        return Long.parseLong(id.group(1));
+    }
+
+    private static int saldo(long produtoId) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT quantidade_estoque FROM produtos WHERE id = ?")) {
+            stmt.setLong(1, produtoId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao ler saldo do produto", e);
+        }
+    }
+
+    private static int contarMovimentacoes(long produtoId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM movimentacoes WHERE produto_id = ?")) {
+            stmt.setLong(1, produtoId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static int portaLivre() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            int porta = socket.getLocalPort();
+            base = "http://localhost:" + porta;
+            return porta;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.estoque.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Histograma: percentis nunca abaixo do valor real e no máximo 25% acima, limitados
+ * pelo máximo registrado.
+ */
+class HistogramaTest {
+
+    private static final long MICRO = 1_000;
+
+    @Test
+    void vazioRespondeZero() {
+        Histograma h = new Histograma();
+        assertEquals(0, h.percentilNanos(0.5));
+        assertEquals(0, h.getContagem());
+        assertEquals(0, h.getMaximoNanos());
+    }
+
+    @Test
+    void percentisDentroDoErroDasFaixas() {
+        Histograma h = new Histograma();
+        for (long us = 1; us <= 10_000; us++) {
+            h.registrar(us * MICRO);
+        }
+        assertEquals(10_000, h.getContagem());
+        assertEquals(10_000 * 10_001 / 2 * MICRO, h.getSomaNanos());
+        assertEquals(10_000 * MICRO, h.getMaximoNanos());
+
+        for (double q : new double[]{0.5, 0.9, 0.95, 0.99}) {
+            long real = (long) Math.ceil(q * 10_000) * MICRO;
+            long estimado = h.percentilNanos(q);
+            assertTrue(estimado >= real, "p" + q + " abaixo do real: " + estimado + " < " + real);
+            assertTrue(estimado <= real * 1.25, "p" + q + " mais de 25% acima: " + estimado + " > " + real);
+        }
+    }
+
+    @Test
+    void percentilNuncaPassaDoMaximo() {
+        Histograma h = new Histograma();
+        h.registrar(1_500 * MICRO);
+        assertEquals(1_500 * MICRO, h.percentilNanos(0.99));
+        assertEquals(1_500 * MICRO, h.percentilNanos(1.0));
+    }
+
+    @Test
+    void valoresExtremos() {
+        Histograma h = new Histograma();
+        h.registrar(-10);
+        h.registrar(0);
+        h.registrar(Long.MAX_VALUE);
+        assertEquals(3, h.getContagem());
+        // Negativo conta como zero, na primeira faixa (limite superior de 1 µs)
+        assertEquals(MICRO, h.percentilNanos(0.5));
+        assertEquals(Long.MAX_VALUE, h.getMaximoNanos());
+        assertTrue(h.percentilNanos(1.0) > 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.estoque.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * CsvWriter sem banco: aspas só quando necessárias (RFC 4180), campos vazios e
+ * linhas terminadas em CRLF.
+ */
+class CsvWriterTest {
+
+    @Test
+    void camposSimplesSemAspas() throws IOException {
+        assertEquals("1,Caneta azul,ENTRADA\r\n", csv(w -> w.value(1).value("Caneta azul").value("ENTRADA").endRow()));
+    }
+
+    @Test
+    void aspasEmCamposComSeparadorAspasOuQuebra() throws IOException {
+        assertEquals("\"a,b\",\"diz \"\"oi\"\"\",\"linha1\nlinha2\",\"cr\rfim\"\r\n",
+                csv(w -> w.value("a,b").value("diz \"oi\"").value("linha1\nlinha2").value("cr\rfim").endRow()));
+    }
+
+    @Test
+    void nuloEVazioViramCampoVazio() throws IOException {
+        assertEquals(",,x\r\n,\r\n", csv(w -> w.value((String) null).value("").value("x").endRow()
+                .value("").value((String) null).endRow()));
+    }
+
+    @Test
+    void numerosNegativosEGrandes() throws IOException {
+        assertEquals("-5," + Long.MAX_VALUE + "\r\n", csv(w -> w.value(-5).value(Long.MAX_VALUE).endRow()));
+    }
+
+    @Test
+    void utf8EBufferMenorQueOConteudo() throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        String nome = "Açúcar ☕ " + "x".repeat(100);
+        try (CsvWriter w = new CsvWriter(saida, 16)) {
+            for (int i = 0; i < 3; i++) {
+                w.value(i).value(nome).endRow();
+            }
+        }
+        String esperado = "0," + nome + "\r\n1," + nome + "\r\n2," + nome + "\r\n";
+        assertEquals(esperado, saida.toString(StandardCharsets.UTF_8));
+    }
+
+    @FunctionalInterface
+    private interface Escrita {
+        void escrever(CsvWriter w) throws IOException;
+    }
+
+    private static String csv(Escrita escrita) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (CsvWriter w = new CsvWriter(saida)) {
+            escrita.escrever(w);
+        }
+        return saida.toString(StandardCharsets.UTF_8);
+    }
+}
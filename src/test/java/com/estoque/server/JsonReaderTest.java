@@ -0,0 +1,143 @@
+package com.estoque.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JsonReader sem banco: escapes, números, limites de decimais e conteúdo depois
+ * do documento.
+ */
+class JsonReaderTest {
+
+    @Test
+    void escapesDeTexto() throws IOException {
+        assertEquals("a\"b\\c/d\b\f\n\r\tç", texto("\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\\u00e7\""));
+    }
+
+    @Test
+    void paresSubstitutosEscapadosEmUtf8() throws IOException {
+        assertEquals("😀", texto("\"\\ud83d\\ude00\""));
+        // Sem escape, direto em UTF-8 nos bytes do corpo
+        JsonReader r = new JsonReader(new ByteArrayInputStream("\"😀 ok\"".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("😀 ok", r.nextString());
+        r.endDocument();
+    }
+
+    @Test
+    void textoMaiorQueOBufferDeLeitura() throws IOException {
+        String longo = "x".repeat(10_000) + "\\n" + "y".repeat(5_000);
+        assertEquals("x".repeat(10_000) + "\n" + "y".repeat(5_000), texto("\"" + longo + "\""));
+    }
+
+    @Test
+    void caractereDeControleSemEscapeERecusado() {
+        assertThrows(JsonParseException.class, () -> texto("\"a\nb\""));
+    }
+
+    @Test
+    void textoNaoTerminadoERecusado() {
+        assertThrows(JsonParseException.class, () -> texto("\"abc"));
+    }
+
+    @Test
+    void objetoComCamposDeCadaTipo() throws IOException {
+        JsonReader r = leitor("""
+                {"id": 7, "nome": "Caneta", "preco": "12.50", "ativo": true,
+                 "categoriaId": null, "ids": [1, 2, 3], "extra": {"a": [1, {"b": "}"}]}}
+                """);
+        r.beginObject();
+        assertEquals("id", r.nextName());
+        assertEquals(7, r.nextInt());
+        assertEquals("nome", r.nextName());
+        assertEquals("Caneta", r.nextString());
+        assertEquals("preco", r.nextName());
+        assertEquals(new BigDecimal("12.50"), r.nextBigDecimal());
+        assertEquals("ativo", r.nextName());
+        assertTrue(r.nextBoolean());
+        assertEquals("categoriaId", r.nextName());
+        assertNull(r.nextLongOrNull());
+        assertEquals("ids", r.nextName());
+        assertEquals(List.of(1L, 2L, 3L), r.nextList(JsonReader::nextLong));
+        assertEquals("extra", r.nextName());
+        r.skipValue();
+        assertFalse(r.hasNext());
+        r.endObject();
+        r.endDocument();
+    }
+
+    @Test
+    void numerosInteiros() throws IOException {
+        assertEquals(-42L, leitor("-42").nextLong());
+        assertEquals(Long.MAX_VALUE, leitor(String.valueOf(Long.MAX_VALUE)).nextLong());
+        assertThrows(JsonParseException.class, () -> leitor("2147483648").nextInt());
+        assertThrows(JsonParseException.class, () -> leitor("1.5").nextLong());
+        assertThrows(JsonParseException.class, () -> leitor("12abc").nextLong());
+    }
+
+    @Test
+    void decimalRespeitaEscalaEDigitosInteiros() throws IOException {
+        assertEquals(new BigDecimal("0.123456"), leitor("0.123456").nextBigDecimal(6, 2));
+        assertEquals(new BigDecimal("-99.5"), leitor("-99.5").nextBigDecimal(6, 2));
+        assertEquals(new BigDecimal("1E+2"), leitor("1e2").nextBigDecimal(6, 3));
+        assertThrows(JsonParseException.class, () -> leitor("0.1234567").nextBigDecimal(6, 2));
+        assertThrows(JsonParseException.class, () -> leitor("100").nextBigDecimal(6, 2));
+    }
+
+    @Test
+    void expoentesExtremosSaoRecusadosSemConta() {
+        assertThrows(JsonParseException.class, () -> leitor("1e-99999999").nextBigDecimal());
+        assertThrows(JsonParseException.class, () -> leitor("1e99999999").nextBigDecimal());
+        assertThrows(JsonParseException.class, () -> leitor("\"1e-99999999\"").nextBigDecimal());
+    }
+
+    @Test
+    void numeroComTextoLongoDemaisERecusado() {
+        assertThrows(JsonParseException.class, () -> leitor("1" + "0".repeat(100)).nextLong());
+        assertThrows(JsonParseException.class, () -> leitor("\"" + "1".repeat(100) + "\"").nextBigDecimal());
+    }
+
+    @Test
+    void conteudoDepoisDoDocumentoERecusado() throws IOException {
+        JsonReader r = leitor("{} {}");
+        r.beginObject();
+        r.endObject();
+        assertThrows(JsonParseException.class, r::endDocument);
+
+        JsonReader espacos = leitor(" {}\n\t ");
+        espacos.beginObject();
+        espacos.endObject();
+        espacos.endDocument();
+    }
+
+    @Test
+    void sintaxeInvalida() {
+        assertThrows(JsonParseException.class, () -> leitor("{\"a\" 1}").skipValue());
+        assertThrows(JsonParseException.class, () -> leitor("[1 2]").nextList(JsonReader::nextLong));
+        assertThrows(JsonParseException.class, () -> leitor("{a: 1}").skipValue());
+        assertThrows(JsonParseException.class, () -> leitor("tru").nextBoolean());
+        assertThrows(JsonParseException.class, () -> leitor("").skipValue());
+    }
+
+    private static JsonReader leitor(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+
+    private static String texto(String json) throws IOException {
+        JsonReader r = leitor(json);
+        String valor = r.nextString();
+        r.endDocument();
+        return valor;
+    }
+}
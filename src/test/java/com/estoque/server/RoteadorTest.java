@@ -0,0 +1,174 @@
+package com.estoque.server;
+
+import com.estoque.service.ChaveIdempotenciaReutilizadaException;
+import com.estoque.service.EstoqueInsuficienteException;
+import com.estoque.service.RecursoNaoEncontradoException;
+import com.estoque.service.SobrecargaException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Roteador sem banco: casamento de caminhos e parâmetros, 404/405/OPTIONS e a
+ * conversão das exceções dos handlers em status, atrás de um HttpServer real.
+ */
+class RoteadorTest {
+
+    private static HttpServer servidor;
+    private static HttpClient cliente;
+    private static String base;
+
+    @BeforeAll
+    static void iniciar() throws IOException {
+        Roteador roteador = new Roteador()
+                .adicionar("GET", "/api/produtos", (exchange, p) -> responder(exchange, "lista"))
+                .adicionar("POST", "/api/produtos", (exchange, p) -> responder(exchange, "criar"))
+                .adicionar("GET", "/api/produtos/{id}", (exchange, p) -> responder(exchange, "produto " + p.id("id")))
+                .adicionar("PUT", "/api/produtos/{id}", (exchange, p) -> responder(exchange, "atualizar " + p.id("id")))
+                .adicionar("POST", "/api/produtos/reajuste", (exchange, p) -> responder(exchange, "reajuste"))
+                .adicionar("GET", "/api/categorias/{categoriaId}/produtos/{id}",
+                        (exchange, p) -> responder(exchange, p.id("categoriaId") + "/" + p.id("id")))
+                .adicionar("GET", "/api/erro/{id}", (exchange, p) -> lancar((int) p.id("id")));
+
+        servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        servidor.createContext("/api", roteador);
+        servidor.start();
+        base = "http://localhost:" + servidor.getAddress().getPort();
+        cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    @AfterAll
+    static void encerrar() {
+        servidor.stop(0);
+    }
+
+    @Test
+    void rotasFixasEComParametros() throws Exception {
+        assertResposta(200, "lista", enviar("GET", "/api/produtos"));
+        assertResposta(200, "criar", enviar("POST", "/api/produtos"));
+        assertResposta(200, "produto 42", enviar("GET", "/api/produtos/42"));
+        assertResposta(200, "atualizar 7", enviar("PUT", "/api/produtos/7/"));
+        assertResposta(200, "3/9", enviar("GET", "/api/categorias/3/produtos/9"));
+    }
+
+    @Test
+    void segmentoFixoTemPrioridadeSobreParametro() throws Exception {
+        assertResposta(200, "reajuste", enviar("POST", "/api/produtos/reajuste"));
+        // "reajuste" não é id: GET não cai em /api/produtos/{id}
+        assertEquals(405, enviar("GET", "/api/produtos/reajuste").statusCode());
+    }
+
+    @Test
+    void caminhoSemRotaResponde404() throws Exception {
+        assertEquals(404, enviar("GET", "/api/nada").statusCode());
+        assertEquals(404, enviar("GET", "/api/produtos/42/extra").statusCode());
+        assertEquals(404, enviar("GET", "/api/categorias/3/produtos").statusCode());
+    }
+
+    @Test
+    void parametroNaoNumericoResponde404() throws Exception {
+        assertEquals(404, enviar("GET", "/api/produtos/abc").statusCode());
+        assertEquals(404, enviar("GET", "/api/produtos/-1").statusCode());
+        assertEquals(404, enviar("GET", "/api/produtos/12a").statusCode());
+        // Não cabe em long
+        assertEquals(404, enviar("GET", "/api/produtos/99999999999999999999").statusCode());
+    }
+
+    @Test
+    void metodoNaoRegistradoResponde405ComAllow() throws Exception {
+        HttpResponse<String> resposta = enviar("DELETE", "/api/produtos/1");
+        assertEquals(405, resposta.statusCode());
+        assertEquals("GET, PUT, OPTIONS", resposta.headers().firstValue("Allow").orElse(null));
+
+        assertEquals("GET, POST, OPTIONS",
+                enviar("PATCH", "/api/produtos").headers().firstValue("Allow").orElse(null));
+    }
+
+    @Test
+    void optionsResponde204ComAllow() throws Exception {
+        HttpResponse<String> resposta = enviar("OPTIONS", "/api/produtos/1");
+        assertEquals(204, resposta.statusCode());
+        assertEquals("GET, PUT, OPTIONS", resposta.headers().firstValue("Allow").orElse(null));
+    }
+
+    @Test
+    void excecoesViramStatus() throws Exception {
+        assertEquals(400, enviar("GET", "/api/erro/400").statusCode());
+        assertEquals(404, enviar("GET", "/api/erro/404").statusCode());
+        assertEquals(409, enviar("GET", "/api/erro/409").statusCode());
+        assertEquals(422, enviar("GET", "/api/erro/422").statusCode());
+        assertEquals(500, enviar("GET", "/api/erro/500").statusCode());
+
+        HttpResponse<String> sobrecarga = enviar("GET", "/api/erro/503");
+        assertEquals(503, sobrecarga.statusCode());
+        assertEquals("1", sobrecarga.headers().firstValue("Retry-After").orElse(null));
+    }
+
+    @Test
+    void modeloUsadoNasMetricas() {
+        Roteador roteador = new Roteador()
+                .adicionar("GET", "/api/produtos/{id}", (exchange, p) -> {})
+                .adicionar("GET", "/api/produtos/reajuste", (exchange, p) -> {});
+        assertEquals("/api/produtos/{id}", roteador.modelo("/api/produtos/5"));
+        assertEquals("/api/produtos/reajuste", roteador.modelo("/api/produtos/reajuste"));
+        assertNull(roteador.modelo("/api/produtos/abc"));
+        assertNull(roteador.modelo("/api/outra"));
+    }
+
+    @Test
+    void rotaDuplicadaERecusada() {
+        Roteador roteador = new Roteador().adicionar("GET", "/api/produtos/{id}", (exchange, p) -> {});
+        assertThrows(IllegalStateException.class,
+                () -> roteador.adicionar("GET", "/api/produtos/{id}", (exchange, p) -> {}));
+        assertThrows(IllegalStateException.class,
+                () -> roteador.adicionar("PUT", "/api/produtos/{produtoId}", (exchange, p) -> {}));
+    }
+
+    private static void lancar(int status) {
+        switch (status) {
+            case 400 -> throw new JsonParseException("corpo inválido");
+            case 404 -> throw new RecursoNaoEncontradoException("não existe");
+            case 409 -> throw new EstoqueInsuficienteException(1L);
+            case 422 -> throw new ChaveIdempotenciaReutilizadaException("chave");
+            case 503 -> throw new SobrecargaException("ocupado");
+            default -> throw new IllegalStateException("falha no handler");
+        }
+    }
+
+    private static void responder(HttpExchange exchange, String texto) throws IOException {
+        byte[] corpo = texto.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, corpo.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(corpo);
+        }
+    }
+
+    private static HttpResponse<String> enviar(String metodo, String caminho) throws Exception {
+        HttpRequest requisicao = HttpRequest.newBuilder(URI.create(base + caminho))
+                .timeout(Duration.ofSeconds(10))
+                .method(metodo, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return cliente.send(requisicao, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void assertResposta(int status, String corpo, HttpResponse<String> resposta) {
+        assertEquals(status, resposta.statusCode(), resposta.body());
+        assertEquals(corpo, resposta.body());
+    }
+}